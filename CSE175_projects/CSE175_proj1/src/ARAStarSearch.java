@@ -0,0 +1,263 @@
+//
+// ARAStarSearch
+//
+// This class implements anytime repairing A* (ARA*) search over the
+// locations in a map.  The search starts out as a weighted A* search, with
+// the frontier sorted by partial path cost plus an inflated heuristic value,
+// so that a solution whose cost is within a known factor of optimal can be
+// found quickly.  The weight on the heuristic is then lowered, step by
+// step, and each improved search reuses the partial path costs found by
+// the previous ones.  Only locations whose costs actually improved since
+// the last search are placed back on the frontier.  The search stops when
+// the weight reaches one (at which point the solution is optimal, given an
+// admissible heuristic), or when its time or expansion budget runs out.
+// In either case, the best solution found so far is returned, and the
+// "suboptimalityBound" variable records a factor by which its cost is
+// guaranteed to be no more than the optimal cost.  If the budget runs out
+// before any solution has been found, failure is reported.  Repeated state
+// checking is always used.  The search is depth-limited, in the same way as
+// the other search classes, and objects of this class maintain the total
+// number of nodes expanded during the last call to "search".
+//
+
+
+import java.util.*;
+
+
+public class ARAStarSearch {
+    static final double MIN_WEIGHT_DECREMENT = 0.01;
+    Map stateSpace;
+    Heuristic heuristic;
+    public String startName;
+    public String finishName;
+    int depthLimit = 10000;
+    public double initialWeight = 3.0;
+    public double weightDecrement = 0.5;
+    public long timeLimit = 0;        // in milliseconds, zero for no limit
+    public int expansionLimit = 0;    // zero for no limit
+    public int expansionCount = 0;
+    public int solutionCount = 0;
+    public double suboptimalityBound = Double.POSITIVE_INFINITY;
+    public ExpansionTrace trace = null;   // records expansions, if given
+    // Search state, valid only during a call to "search" ...
+    double weight;
+    long deadline;
+    SortedFrontier fringe;
+    java.util.Map<String, Waypoint> bestNode;
+    java.util.Map<String, Double> hValue;
+    Set<String> openNames;
+    Set<String> closedList;
+    java.util.Map<String, Waypoint> inconsistent;
+
+    // Default constructor ...
+    public ARAStarSearch() {
+	this.stateSpace = null;
+	this.heuristic = new Heuristic();
+	this.startName = "";
+	this.finishName = "";
+	this.depthLimit = 10000;
+	this.expansionCount = 0;
+    }
+
+    // Constructor with state space, heuristic, and search parameters
+    // specified ...
+    public ARAStarSearch(Map stateSpace, Heuristic heuristic,
+			 String startName, String finishName, int depthLimit) {
+	this();
+	this.stateSpace = stateSpace;
+	this.heuristic = heuristic;
+	this.startName = startName;
+	this.finishName = finishName;
+	this.depthLimit = depthLimit;
+    }
+
+    // setBudget -- Limit the time, in milliseconds, and the number of node
+    // expansions that a call to "search" may use.  A limit of zero means
+    // that there is no limit.
+    public void setBudget(long timeLimit, int expansionLimit) {
+	this.timeLimit = timeLimit;
+	this.expansionLimit = expansionLimit;
+    }
+
+    // setWeights -- Set the initial weight on the heuristic and the amount
+    // by which it is lowered between successive searches.  The weight is at
+    // least one, and the decrement is at least "MIN_WEIGHT_DECREMENT", so
+    // that the weight eventually reaches one.
+    public void setWeights(double initialWeight, double weightDecrement) {
+	this.initialWeight = Math.max(1.0, initialWeight);
+	if (weightDecrement >= MIN_WEIGHT_DECREMENT)
+	    this.weightDecrement = weightDecrement;
+	else
+	    this.weightDecrement = MIN_WEIGHT_DECREMENT;
+    }
+
+    // search -- Perform a sequence of weighted A* searches, with decreasing
+    // weights, until the weight reaches one or the budget is exhausted.
+    // Return the best goal node found, or null on failure.
+    public Waypoint search() {
+	// Find initial and final locations ...
+	Location initialLoc = stateSpace.findLocation(startName);
+	Location finalLoc = stateSpace.findLocation(finishName);
+	if ((initialLoc == null) || (finalLoc == null))
+	    // Invalid location name, so return failure ...
+	    return (null);
+	heuristic.setDestination(finalLoc);
+	// Initialize the search state ...
+	deadline = System.nanoTime() + (timeLimit * 1000000L);
+	bestNode = new HashMap<String, Waypoint>();
+	hValue = new HashMap<String, Double>();
+	openNames = new HashSet<String>();
+	closedList = new HashSet<String>();
+	inconsistent = new LinkedHashMap<String, Waypoint>();
+	expansionCount = 0;
+	solutionCount = 0;
+	suboptimalityBound = Double.POSITIVE_INFINITY;
+	weight = initialWeight;
+	fringe = new SortedFrontier(SortBy.f);
+	// Make the initial node ...
+	Waypoint initialNode = new Waypoint(initialLoc);
+	initialNode.heuristicValue = weight * baseHeuristic(initialNode);
+	bestNode.put(initialLoc.name, initialNode);
+	addToFringe(initialNode);
+	// Find a first solution, and then keep improving it ...
+	Waypoint solution = null;
+	while (true) {
+	    boolean finished = improvePath();
+	    Waypoint goal = bestNode.get(finishName);
+	    if (goal != solution) {
+		solution = goal;
+		solutionCount++;
+	    }
+	    if (!finished)
+		// Out of budget, so keep the bound from the last completed
+		// search ...
+		break;
+	    if (solution == null)
+		// The whole reachable space was searched without finding
+		// the destination ...
+		break;
+	    suboptimalityBound = Math.min(weight, currentBound(solution));
+	    if ((suboptimalityBound <= 1.0) || (weight <= 1.0))
+		break;
+	    // Lower the weight and repair the frontier for the next search ...
+	    // (The public decrement may have been set directly, so it is
+	    // checked here, as in "setWeights") ...
+	    double step = (weightDecrement >= MIN_WEIGHT_DECREMENT)
+		? weightDecrement : MIN_WEIGHT_DECREMENT;
+	    weight = Math.max(1.0, weight - step);
+	    refillFringe();
+	}
+	return (solution);
+    }
+
+    // improvePath -- Expand nodes in order of their inflated f-values until
+    // the destination has a partial path cost no greater than the lowest
+    // inflated f-value on the frontier.  Return false if the budget ran out
+    // first, or true otherwise.
+    boolean improvePath() {
+	while (!(fringe.isEmpty())) {
+	    Waypoint node = fringe.removeTop();
+	    Waypoint goal = bestNode.get(finishName);
+	    if ((goal != null) &&
+		(goal.partialPathCost
+		 <= node.partialPathCost + node.heuristicValue)) {
+		// The current solution can't be improved at this weight ...
+		fringe.addSorted(node);
+		return (true);
+	    }
+	    if (outOfBudget()) {
+		fringe.addSorted(node);
+		return (false);
+	    }
+	    openNames.remove(node.loc.name);
+	    closedList.add(node.loc.name);
+	    if (node.depth >= depthLimit)
+		continue;
+	    expansionCount++;
+	    if (trace != null)
+		trace.record(node);
+	    for (Road r : node.loc.roads) {
+		double g = node.partialPathCost + r.cost;
+		Waypoint old = bestNode.get(r.toLocation.name);
+		if ((old != null) && (old.partialPathCost <= g))
+		    continue;
+		// This is a cheaper way to reach the location ...
+		Waypoint child = new Waypoint(r.toLocation, node);
+		child.depth = node.depth + 1;
+		child.partialPathCost = g;
+		child.heuristicValue = weight * baseHeuristic(child);
+		bestNode.put(child.loc.name, child);
+		if (closedList.contains(child.loc.name)) {
+		    // Already expanded during this search, so wait for the
+		    // next one ...
+		    inconsistent.put(child.loc.name, child);
+		} else {
+		    if ((old != null) && openNames.contains(old.loc.name))
+			fringe.remove(old);
+		    addToFringe(child);
+		}
+	    }
+	}
+	return (true);
+    }
+
+    // refillFringe -- Move the nodes whose costs improved after they were
+    // expanded back onto the frontier, and re-sort the whole frontier using
+    // the current heuristic weight.
+    void refillFringe() {
+	List<Waypoint> nodes = new ArrayList<Waypoint>();
+	while (!(fringe.isEmpty()))
+	    nodes.add(fringe.removeTop());
+	nodes.addAll(inconsistent.values());
+	inconsistent.clear();
+	closedList.clear();
+	openNames.clear();
+	fringe = new SortedFrontier(SortBy.f);
+	for (Waypoint wp : nodes) {
+	    wp.heuristicValue = weight * baseHeuristic(wp);
+	    addToFringe(wp);
+	}
+    }
+
+    // currentBound -- Return the ratio of the cost of the given solution to
+    // the lowest uninflated f-value of any node that might still lead to a
+    // cheaper solution.  This ratio bounds the suboptimality of the solution.
+    double currentBound(Waypoint solution) {
+	double lowest = Double.POSITIVE_INFINITY;
+	for (Waypoint wp : fringe.fringe)
+	    lowest = Math.min(lowest, wp.partialPathCost + baseHeuristic(wp));
+	for (Waypoint wp : inconsistent.values())
+	    lowest = Math.min(lowest, wp.partialPathCost + baseHeuristic(wp));
+	if (lowest >= solution.partialPathCost)
+	    return (1.0);
+	return (solution.partialPathCost / lowest);
+    }
+
+    // baseHeuristic -- Return the uninflated heuristic value of the given
+    // node, computing it only once per location.
+    double baseHeuristic(Waypoint wp) {
+	Double h = hValue.get(wp.loc.name);
+	if (h == null) {
+	    h = heuristic.heuristicFunction(wp);
+	    hValue.put(wp.loc.name, h);
+	}
+	return (h);
+    }
+
+    // addToFringe -- Add the given node to the frontier.
+    void addToFringe(Waypoint wp) {
+	fringe.addSorted(wp);
+	openNames.add(wp.loc.name);
+    }
+
+    // outOfBudget -- Return true if and only if either the time limit or
+    // the expansion limit has been reached.
+    boolean outOfBudget() {
+	if ((expansionLimit > 0) && (expansionCount >= expansionLimit))
+	    return (true);
+	if ((timeLimit > 0) && (System.nanoTime() >= deadline))
+	    return (true);
+	return (false);
+    }
+
+}
@@ -0,0 +1,145 @@
+//
+// BestFirstSearch
+//
+// This class implements best-first search over the locations in a map, in
+// the usual textbook way, with the frontier sorted by partial path cost
+// (uniform-cost search), by heuristic value (greedy best-first search), or
+// by their sum (A* search).  The kind of priority queue used for the
+// frontier may be selected:  an ordinary SortedFrontier, a RadixHeapFrontier,
+// or a BucketFrontier with a given scale factor.  The last two rely on the
+// sorting statistic of removed nodes never decreasing, so they may only be
+// used for uniform-cost search, or for A* search with a consistent
+// heuristic, and the bucket queue only sorts exactly when the scaled
+// statistics are integers.  The search may be performed with or without
+// repeated state checking.  The search is depth-limited, in the same way
+// as the other search classes, and objects of this class maintain the
+// total number of nodes expanded during the last call to "search".
+//
+
+
+import java.util.*;
+
+
+public class BestFirstSearch {
+
+    // FrontierType -- The kinds of priority queue that may hold the
+    // frontier.
+    public enum FrontierType { sorted, radix, bucket }
+
+    // Comparators for choosing between nodes, indexed by the ordinal of
+    // their sorting strategy ...
+    static final WaypointComparator[] comparators
+	= { new WaypointComparator(SortBy.g), new WaypointComparator(SortBy.h),
+	    new WaypointComparator(SortBy.f) };
+
+    Map stateSpace;
+    Heuristic heuristic;
+    SortBy sortingStrategy;
+    public String startName;
+    public String finishName;
+    int depthLimit = 10000;
+    public FrontierType frontierType = FrontierType.sorted;
+    public double bucketScale = 1.0;   // for a BucketFrontier
+    public int expansionCount = 0;
+
+    // Default constructor ...
+    public BestFirstSearch() {
+	this.stateSpace = null;
+	this.heuristic = new Heuristic();
+	this.sortingStrategy = SortBy.f;
+	this.startName = "";
+	this.finishName = "";
+	this.depthLimit = 10000;
+	this.expansionCount = 0;
+    }
+
+    // Constructor with state space, heuristic, sorting strategy, and search
+    // parameters specified ...
+    public BestFirstSearch(Map stateSpace, Heuristic heuristic,
+			   SortBy sortingStrategy, String startName,
+			   String finishName, int depthLimit) {
+	this();
+	this.stateSpace = stateSpace;
+	this.heuristic = heuristic;
+	this.sortingStrategy = sortingStrategy;
+	this.startName = startName;
+	this.finishName = finishName;
+	this.depthLimit = depthLimit;
+    }
+
+    // setFrontierType -- Select the kind of priority queue used for the
+    // frontier, with the given scale factor for a BucketFrontier.
+    public void setFrontierType(FrontierType frontierType, double scale) {
+	this.frontierType = frontierType;
+	this.bucketScale = scale;
+    }
+
+    // newFrontier -- Return an empty frontier of the selected kind.  The
+    // monotone queues reject sorting by heuristic value alone.
+    SortedFrontier newFrontier() {
+	switch (frontierType) {
+	case radix:
+	    return (new RadixHeapFrontier(sortingStrategy));
+	case bucket:
+	    return (new BucketFrontier(sortingStrategy, bucketScale));
+	default:
+	    return (new SortedFrontier(sortingStrategy));
+	}
+    }
+
+    // search -- Perform best-first search from the initial location to the
+    // destination location, with or without repeated state checking.
+    // Return the goal node, or null on failure.
+    public Waypoint search(boolean stateChecking) {
+	// Find initial and final locations ...
+	Location initialLoc = stateSpace.findLocation(startName);
+	Location finalLoc = stateSpace.findLocation(finishName);
+	if ((initialLoc == null) || (finalLoc == null))
+	    // Invalid location name, so return failure ...
+	    return (null);
+	heuristic.setDestination(finalLoc);
+	expansionCount = 0;
+	SortedFrontier fringe = newFrontier();
+	Set<String> closed = new HashSet<String>();
+	// Make the initial node ...
+	Waypoint node = new Waypoint(initialLoc);
+	node.heuristicValue = heuristic.heuristicFunction(node);
+	fringe.addSorted(node);
+	while (!(fringe.isEmpty())) {
+	    node = fringe.removeTop();
+	    if (node.isFinalDestination(finishName))
+		return (node);
+	    if (node.depth >= depthLimit)
+		continue;
+	    expansionCount++;
+	    node.expand(heuristic);
+	    if (!stateChecking) {
+		fringe.addSorted(node.options);
+		continue;
+	    }
+	    closed.add(node.loc.name);
+	    for (Waypoint child : node.options) {
+		if (closed.contains(child.loc.name))
+		    continue;
+		Waypoint old = fringe.find(child.loc);
+		if (old == null) {
+		    fringe.addSorted(child);
+		} else if (better(child, old, sortingStrategy)) {
+		    fringe.remove(old);
+		    fringe.addSorted(child);
+		}
+	    }
+	}
+	return (null);
+    }
+
+    // better -- Return true if the first node should replace the second on
+    // a frontier sorted by the given statistic.  When sorting by heuristic
+    // value, which is the same for both nodes, the cheaper node is kept.
+    static boolean better(Waypoint wp1, Waypoint wp2, SortBy sortBy) {
+	if (sortBy == SortBy.h)
+	    return (wp1.partialPathCost < wp2.partialPathCost);
+	return (comparators[sortBy.ordinal()].compare(wp1, wp2) < 0);
+    }
+
+}
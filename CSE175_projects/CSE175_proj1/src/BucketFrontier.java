@@ -0,0 +1,118 @@
+//
+// BucketFrontier
+//
+// This class implements a monotone priority queue of Waypoint objects as a
+// bucket queue (Dial's algorithm).  The sorting statistic of each node is
+// multiplied by a scale factor and rounded down to an integer key, and the
+// node is placed in the bucket for that key.  The buckets form a circular
+// array that covers the range of keys currently in the queue, growing when
+// a key falls outside of that range.  Removing a node only requires
+// stepping forward to the next nonempty bucket.  Nodes whose keys round to
+// the same integer are removed in the order in which they were added, so
+// this queue sorts exactly only when the scaled statistics are integers
+// (e.g., when road costs are given in whole units, or are multiples of the
+// inverse of the scale factor).  Otherwise, nodes may come out of order by
+// less than one over the scale factor.  This class is intended to be used
+// in place of a SortedFrontier in uniform-cost search, or in A* search with
+// a consistent heuristic.
+//
+
+
+import java.util.*;
+
+
+public class BucketFrontier extends MonotoneFrontier {
+    double scale = 1.0;
+    List<ArrayDeque<Entry>> buckets;
+    ArrayDeque<Entry> unreachable;     // nodes with infinite keys
+    long current = 0;                  // the key of the current bucket
+    long maxKey = 0;                   // no less than any finite key held
+    long lastKey = Long.MIN_VALUE;     // the key of the last node removed
+    int entries = 0;                   // including nodes marked as removed
+
+    // Default constructor ...
+    public BucketFrontier() {
+	this(SortBy.g, 1.0);
+    }
+
+    // Constructor with sorting strategy and scale factor specified ...
+    public BucketFrontier(SortBy strategy, double scale) {
+	super(strategy);
+	this.scale = scale;
+	this.buckets = new ArrayList<ArrayDeque<Entry>>();
+	for (int i = 0; i < 64; i++)
+	    buckets.add(new ArrayDeque<Entry>());
+	this.unreachable = new ArrayDeque<Entry>();
+    }
+
+    // keyOf -- Return the integer key for the given sorting statistic.
+    long keyOf(double value) {
+	long key = (long) Math.floor(value * scale);
+	return ((key < lastKey) ? lastKey : key);
+    }
+
+    // slot -- Return the bucket for the given key.
+    ArrayDeque<Entry> slot(long key) {
+	return (buckets.get((int) (key & (buckets.size() - 1))));
+    }
+
+    // push -- Insert the given entry with the given key.
+    void push(Entry e, double value) {
+	if (Double.isInfinite(value)) {
+	    unreachable.addLast(e);
+	    entries++;
+	    return;
+	}
+	long key = keyOf(value);
+	if (entries == unreachable.size()) {
+	    // There are no finite keys in the queue, so start from here ...
+	    current = key;
+	    maxKey = key;
+	} else if (key < current) {
+	    // This key falls between the last key removed and the current
+	    // bucket, so move back to it ...
+	    rebuild(key, maxKey - key + 1);
+	} else if (key - current >= buckets.size()) {
+	    rebuild(current, key - current + 1);
+	}
+	maxKey = Math.max(maxKey, key);
+	slot(key).addLast(e);
+	entries++;
+    }
+
+    // pop -- Extract and return an entry with the smallest key.
+    Entry pop() {
+	if (entries == 0)
+	    return (null);
+	entries--;
+	if (entries < unreachable.size())
+	    return (unreachable.pollFirst());
+	while (slot(current).isEmpty())
+	    current++;
+	lastKey = current;
+	return (slot(current).pollFirst());
+    }
+
+    // rebuild -- Make the circular array of buckets start at the given key
+    // and cover at least the given number of keys, moving the contents of
+    // the old buckets into place.
+    void rebuild(long start, long span) {
+	int size = buckets.size();
+	while (size < span)
+	    size *= 2;
+	List<ArrayDeque<Entry>> old = buckets;
+	buckets = new ArrayList<ArrayDeque<Entry>>(size);
+	for (int i = 0; i < size; i++)
+	    buckets.add(new ArrayDeque<Entry>());
+	// Walk the old buckets in key order, so that nodes with the same key
+	// keep their order ...
+	int oldSize = old.size();
+	for (int i = 0; i < oldSize; i++) {
+	    long key = current + i;
+	    for (Entry e : old.get((int) (key & (oldSize - 1))))
+		slot(key).addLast(e);
+	}
+	current = start;
+    }
+
+}
@@ -0,0 +1,139 @@
+//
+// ExpansionTrace
+//
+// This class records the node expansions performed by a search, so that
+// the behavior of a heuristic can be examined after the fact, without
+// printing anything while the search runs.  For each expansion, the
+// identifier of the location expanded, the partial path cost, the heuristic
+// value, and the depth of the node are stored in preallocated arrays that
+// are used as a ring buffer, so only the most recent expansions are kept
+// once the buffer is full, and recording never allocates memory.  A search
+// engine holding no trace, or a disabled one, pays only for a single test
+// per expansion.  The recorded expansions can be reported as text, in the
+// style of the search logs, or written in a binary format holding the
+// number of expansions kept and the total number recorded, as a 32-bit and
+// a 64-bit integer, followed by the location identifiers and depths, as
+// 32-bit integers, and the partial path costs and heuristic values, as
+// 64-bit floating point numbers, oldest first.
+//
+
+
+import java.io.*;
+
+
+public class ExpansionTrace {
+    static final int MAGIC = 0x54524331;   // "TRC1"
+    public boolean enabled = true;
+    int[] location;
+    int[] depth;
+    double[] partialPathCost;
+    double[] heuristicValue;
+    long total = 0;            // expansions recorded, including overwritten
+
+    // Constructor with the number of expansions to keep specified ...
+    public ExpansionTrace(int capacity) {
+	capacity = Math.max(capacity, 1);
+	this.location = new int[capacity];
+	this.depth = new int[capacity];
+	this.partialPathCost = new double[capacity];
+	this.heuristicValue = new double[capacity];
+    }
+
+    // record -- Note the expansion of a node for the location with the given
+    // identifier, with the given statistics, overwriting the oldest
+    // expansion if the buffer is full.
+    public void record(int loc, double g, double h, int d) {
+	if (!enabled)
+	    return;
+	int i = (int) (total % location.length);
+	location[i] = loc;
+	partialPathCost[i] = g;
+	heuristicValue[i] = h;
+	depth[i] = d;
+	total++;
+    }
+
+    // record -- Note the expansion of the given node.
+    public void record(Waypoint wp) {
+	record(wp.loc.id, wp.partialPathCost, wp.heuristicValue, wp.depth);
+    }
+
+    // size -- Return the number of expansions currently kept.
+    public int size() {
+	return ((int) Math.min(total, (long) location.length));
+    }
+
+    // totalCount -- Return the number of expansions recorded since the
+    // trace was last cleared, including those no longer kept.
+    public long totalCount() {
+	return (total);
+    }
+
+    // clear -- Discard every recorded expansion.
+    public void clear() {
+	total = 0;
+    }
+
+    // slot -- Return the buffer position of the expansion with the given
+    // index, with zero being the oldest expansion kept.
+    int slot(int index) {
+	return ((int) ((total - size() + index) % location.length));
+    }
+
+    // report -- Output a textual description of the recorded expansions,
+    // oldest first, sending it to the given stream.  Locations are named
+    // using the given map.
+    public void report(Map stateSpace, OutputStream str) {
+	PrintWriter out = new PrintWriter(str, true);
+	int n = size();
+	if (total > n)
+	    out.printf("(%d earlier expansions were not kept.)\n", total - n);
+	for (int k = 0; k < n; k++) {
+	    int i = slot(k);
+	    double g = partialPathCost[i];
+	    double h = heuristicValue[i];
+	    out.printf("EXPAND %s (g = %f, h = %f, f = %f, depth = %d).\n",
+		       stateSpace.locations.get(location[i]).name,
+		       g, h, g + h, depth[i]);
+	}
+	out.printf("Number of Node Expansions = %d.\n", total);
+    }
+
+    // write -- Write the recorded expansions to the given stream in the
+    // binary format described above.
+    public void write(OutputStream str) throws IOException {
+	DataOutputStream out
+	    = new DataOutputStream(new BufferedOutputStream(str));
+	int n = size();
+	out.writeInt(MAGIC);
+	out.writeInt(n);
+	out.writeLong(total);
+	for (int k = 0; k < n; k++)
+	    out.writeInt(location[slot(k)]);
+	for (int k = 0; k < n; k++)
+	    out.writeInt(depth[slot(k)]);
+	for (int k = 0; k < n; k++)
+	    out.writeDouble(partialPathCost[slot(k)]);
+	for (int k = 0; k < n; k++)
+	    out.writeDouble(heuristicValue[slot(k)]);
+	out.flush();
+    }
+
+    // write -- Write the recorded expansions to the file with the given
+    // pathname.  Return false on error.
+    public boolean write(String filename) {
+	try {
+	    FileOutputStream fileOut = new FileOutputStream(filename);
+	    try {
+		write(fileOut);
+	    } finally {
+		fileOut.close();
+	    }
+	    return (true);
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (false);
+	}
+    }
+
+}
@@ -0,0 +1,56 @@
+//
+// GeometricHeuristic
+//
+// This class extends the Heuristic class, providing a heuristic function
+// based on the straight-line distance between the coordinates of a location
+// and those of the destination.  Road costs need not be distances, so the
+// straight-line distance is multiplied by the smallest ratio of road cost
+// to road length found anywhere on the map.  No road is cheaper, per unit
+// of distance covered, than this ratio allows, so the heuristic is both
+// admissible and consistent.
+//
+
+
+public class GeometricHeuristic extends Heuristic {
+    public double scale = 1.0;
+
+    // Constructor with the cost per unit distance specified ...
+    public GeometricHeuristic(double scale) {
+	super();
+	this.scale = scale;
+    }
+
+    // Constructor with state space specified, from which the cost per unit
+    // distance is calculated ...
+    public GeometricHeuristic(Map stateSpace) {
+	this(0.0);
+	double best = Double.POSITIVE_INFINITY;
+	for (Location loc : stateSpace.locations) {
+	    for (Road r : loc.roads) {
+		double length = distance(r.fromLocation, r.toLocation);
+		if (length > 0.0)
+		    best = Math.min(best, r.cost / length);
+	    }
+	}
+	if (best < Double.POSITIVE_INFINITY)
+	    this.scale = Math.max(best, 0.0);
+    }
+
+    // distance -- Return the straight-line distance between the given
+    // locations.
+    static double distance(Location loc1, Location loc2) {
+	double dx = loc1.longitude - loc2.longitude;
+	double dy = loc1.latitude - loc2.latitude;
+	return (Math.sqrt((dx * dx) + (dy * dy)));
+    }
+
+    // heuristicFunction -- Return the appropriate heuristic values for the
+    // given search tree node.  Note that the given Waypoint should not be
+    // modified within the body of this function.
+    public double heuristicFunction(Waypoint wp) {
+	if (destination == null)
+	    return (0.0);
+	return (scale * distance(wp.loc, destination));
+    }
+
+}
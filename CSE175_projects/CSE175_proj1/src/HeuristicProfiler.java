@@ -0,0 +1,259 @@
+//
+// HeuristicProfiler
+//
+// This class measures how well different heuristic functions guide A*
+// search on a given map, over a common workload of queries.  Each query is
+// answered by an A* search with repeated state checking, recording every
+// expansion in an ExpansionTrace, and the results are compared against the
+// true cost to the destination from every location, found by a reverse
+// uniform-cost search from the destination.  For each heuristic, the
+// profiler reports the total number of expansions, the mean effective
+// branching factor (the branching factor of a uniform tree, as deep as the
+// solution, holding as many nodes as were expanded), the mean ratio of the
+// heuristic value to the true cost over the expanded locations, the number
+// of expanded locations where the heuristic overestimated the true cost
+// (admissibility violations), the number of roads leaving expanded locations
+// across which the heuristic dropped by more than the road cost (consistency
+// violations), the number of queries answered with a more costly path than
+// necessary, and percentiles of the search time.  The queries are run in
+// parallel on a fork/join pool, so heuristic objects, which record their
+// destination, are obtained from a Supplier for each query.
+//
+
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+
+// HeuristicProfile -- The measurements made for one heuristic function.
+class HeuristicProfile {
+    String label;
+    int queryCount = 0;
+    long expansionCount = 0;
+    double branchingTotal = 0.0;
+    int branchingCount = 0;
+    double ratioTotal = 0.0;
+    long ratioCount = 0;
+    long inadmissibleCount = 0;
+    long inconsistentCount = 0;
+    int suboptimalCount = 0;
+    long[] latency;            // in nanoseconds, one per query
+
+    // Constructor with label and number of queries specified ...
+    public HeuristicProfile(String label, int queries) {
+	this.label = label;
+	this.latency = new long[queries];
+    }
+
+    // percentile -- Return the search time, in microseconds, below which
+    // the given fraction of the queries fell.
+    public double percentile(double fraction) {
+	if (latency.length == 0)
+	    return (0.0);
+	long[] sorted = latency.clone();
+	Arrays.sort(sorted);
+	int i = (int) Math.ceil(fraction * sorted.length) - 1;
+	return (sorted[Math.max(0, Math.min(i, sorted.length - 1))] / 1000.0);
+    }
+
+}
+
+
+public class HeuristicProfiler {
+    static final double TOLERANCE = 1e-9;
+    Map stateSpace;
+    ForkJoinPool pool;
+    int depthLimit = 10000;
+    List<Location[]> queries;
+    java.util.Map<Integer, ShortestPathTree> truth;
+    public List<HeuristicProfile> profiles;
+
+    // Constructor with state space specified, using the common fork/join
+    // pool ...
+    public HeuristicProfiler(Map stateSpace) {
+	this(stateSpace, ForkJoinPool.commonPool());
+    }
+
+    // Constructor with state space and fork/join pool specified ...
+    public HeuristicProfiler(Map stateSpace, ForkJoinPool pool) {
+	this.stateSpace = stateSpace;
+	this.pool = pool;
+	this.queries = new ArrayList<Location[]>();
+	this.truth = new ConcurrentHashMap<Integer, ShortestPathTree>();
+	this.profiles = new ArrayList<HeuristicProfile>();
+    }
+
+    // addQuery -- Add a query from the named initial location to the named
+    // destination to the workload.  Return false if either is not on the
+    // map.
+    public boolean addQuery(String startName, String finishName) {
+	Location initialLoc = stateSpace.findLocation(startName);
+	Location finalLoc = stateSpace.findLocation(finishName);
+	if ((initialLoc == null) || (finalLoc == null))
+	    return (false);
+	queries.add(new Location[] { initialLoc, finalLoc });
+	return (true);
+    }
+
+    // addRandomQueries -- Add the given number of queries between randomly
+    // chosen locations to the workload.
+    public void addRandomQueries(int count, long seed) {
+	Random rnd = new Random(seed);
+	int size = stateSpace.locations.size();
+	for (int i = 0; (i < count) && (size > 0); i++)
+	    queries.add(new Location[] {
+		    stateSpace.locations.get(rnd.nextInt(size)),
+		    stateSpace.locations.get(rnd.nextInt(size)) });
+    }
+
+    // profile -- Run the whole workload using heuristics from the given
+    // supplier, one for each query, and record the measurements under the
+    // given label.  Return the measurements.
+    public HeuristicProfile profile(String label,
+				    Supplier<? extends Heuristic> source) {
+	final Supplier<? extends Heuristic> heuristics = source;
+	final HeuristicProfile result
+	    = new HeuristicProfile(label, queries.size());
+	List<Future<?>> tasks = new ArrayList<Future<?>>();
+	for (int i = 0; i < queries.size(); i++) {
+	    final int q = i;
+	    tasks.add(pool.submit(new Runnable() {
+		    public void run() {
+			runQuery(q, heuristics.get(), result);
+		    }
+		}));
+	}
+	for (Future<?> task : tasks) {
+	    try {
+		task.get();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		break;
+	    } catch (ExecutionException e) {
+		throw new RuntimeException(e.getCause());
+	    }
+	}
+	profiles.add(result);
+	return (result);
+    }
+
+    // runQuery -- Answer the query with the given index using the given
+    // heuristic, adding the measurements to the given profile.
+    void runQuery(int q, Heuristic heuristic, HeuristicProfile result) {
+	Location initialLoc = queries.get(q)[0];
+	Location finalLoc = queries.get(q)[1];
+	PooledBestFirstSearch engine
+	    = new PooledBestFirstSearch(stateSpace, heuristic, SortBy.f,
+					initialLoc.name, finalLoc.name,
+					depthLimit);
+	engine.trace = new ExpansionTrace(stateSpace.locations.size());
+	long start = System.nanoTime();
+	Waypoint solution = engine.search();
+	long elapsed = System.nanoTime() - start;
+	// Compare against the true costs ...
+	double[] trueCost = trueCostsTo(finalLoc);
+	ExpansionTrace trace = engine.trace;
+	Waypoint probe = new Waypoint();
+	long inadmissible = 0;
+	long inconsistent = 0;
+	double ratioTotal = 0.0;
+	long ratioCount = 0;
+	for (int k = 0; k < trace.size(); k++) {
+	    int i = trace.slot(k);
+	    Location loc = stateSpace.locations.get(trace.location[i]);
+	    double h = trace.heuristicValue[i];
+	    double hStar = trueCost[loc.id];
+	    if (h > hStar + TOLERANCE)
+		inadmissible++;
+	    if ((hStar > 0.0) && (hStar < Double.POSITIVE_INFINITY)) {
+		ratioTotal += h / hStar;
+		ratioCount++;
+	    }
+	    for (Road r : loc.roads) {
+		probe.loc = r.toLocation;
+		if (h > r.cost + heuristic.heuristicFunction(probe) + TOLERANCE)
+		    inconsistent++;
+	    }
+	}
+	double best = trueCost[initialLoc.id];
+	boolean suboptimal = (solution == null)
+	    ? (best < Double.POSITIVE_INFINITY)
+	    : (solution.partialPathCost > best + TOLERANCE);
+	double branching = ((solution != null) && (solution.depth > 0))
+	    ? branchingFactor(engine.expansionCount, solution.depth) : 0.0;
+	synchronized (result) {
+	    result.queryCount++;
+	    result.expansionCount += engine.expansionCount;
+	    if (branching > 0.0) {
+		result.branchingTotal += branching;
+		result.branchingCount++;
+	    }
+	    result.ratioTotal += ratioTotal;
+	    result.ratioCount += ratioCount;
+	    result.inadmissibleCount += inadmissible;
+	    result.inconsistentCount += inconsistent;
+	    if (suboptimal)
+		result.suboptimalCount++;
+	    result.latency[q] = elapsed;
+	}
+    }
+
+    // trueCostsTo -- Return the cost of the shortest path from every
+    // location to the given destination, computing it only once for each
+    // destination.
+    double[] trueCostsTo(Location finalLoc) {
+	ShortestPathTree tree = truth.get(finalLoc.id);
+	if (tree == null) {
+	    tree = new ShortestPathTree(stateSpace, finalLoc, true);
+	    truth.put(finalLoc.id, tree);
+	}
+	return (tree.dist);
+    }
+
+    // branchingFactor -- Return the effective branching factor b, for which
+    // a uniform tree of the given depth has the given number of nodes below
+    // its root:  b + b^2 + ... + b^depth = nodes.
+    static double branchingFactor(long nodes, int depth) {
+	double low = 0.0;
+	double high = Math.max(1.0, (double) nodes);
+	for (int i = 0; i < 100; i++) {
+	    double b = (low + high) / 2.0;
+	    double total = 0.0;
+	    double power = 1.0;
+	    for (int d = 0; (d < depth) && (total <= nodes); d++) {
+		power *= b;
+		total += power;
+	    }
+	    if (total < nodes)
+		low = b;
+	    else
+		high = b;
+	}
+	return ((low + high) / 2.0);
+    }
+
+    // report -- Output a table of the measurements made so far, one line for
+    // each heuristic, sending it to the given stream.
+    public void report(OutputStream str) {
+	PrintWriter out = new PrintWriter(str, true);
+	out.printf("%-12s %8s %12s %8s %8s %8s %8s %8s %10s %10s %10s\n",
+		   "HEURISTIC", "QUERIES", "EXPANSIONS", "B*", "H/H*",
+		   "INADMIS", "INCONS", "SUBOPT", "P50(us)", "P90(us)",
+		   "P99(us)");
+	for (HeuristicProfile p : profiles) {
+	    double branching = (p.branchingCount > 0)
+		? (p.branchingTotal / p.branchingCount) : 0.0;
+	    double ratio = (p.ratioCount > 0)
+		? (p.ratioTotal / p.ratioCount) : 0.0;
+	    out.printf("%-12s %8d %12d %8.3f %8.3f %8d %8d %8d "
+		       + "%10.1f %10.1f %10.1f\n",
+		       p.label, p.queryCount, p.expansionCount, branching,
+		       ratio, p.inadmissibleCount, p.inconsistentCount,
+		       p.suboptimalCount, p.percentile(0.50),
+		       p.percentile(0.90), p.percentile(0.99));
+	}
+    }
+
+}
@@ -0,0 +1,455 @@
+//
+// HubLabelIndex
+//
+// This class answers queries for the cost of the shortest path between two
+// locations on a map, without finding the path itself, using a hub
+// labeling.  Each location is given an "out" label, listing some locations
+// (hubs) that it can reach along with the cost of reaching them, and an
+// "in" label, listing some hubs that can reach it along with the cost.  The
+// labels are built so that every shortest path passes through a hub that is
+// in the out label of its start and the in label of its end, so the cost of
+// the shortest path is the smallest sum of matching entries.  The labels are
+// built by pruned landmark labeling:  the locations are ranked, with those
+// on the most shortest paths first, and a uniform-cost search is run forward
+// and backward from each location in turn, adding it as a hub to the labels of
+// the locations it reaches, but pruning the search wherever the labels
+// built so far already give a path that is no more costly.  The entries of
+// each label are sorted by hub rank, so a query is a single merge of two
+// short lists.  All labels are stored in flat primitive arrays, and they can
+// be written to a binary file and later mapped into memory, so that an index
+// can be put to use without being rebuilt or even read in full.  The file
+// holds the number of locations and the total number of entries in each
+// direction, as 32-bit integers, followed by, for each direction, the
+// starting position of each location's label, the hub ranks, and then the
+// costs, as 64-bit floating point numbers.
+//
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+
+public class HubLabelIndex {
+    static final int MAGIC = 0x48554231;   // "HUB1"
+    int size = 0;
+    // Labels listing hubs reachable from each location ...
+    IntBuffer outStart;
+    IntBuffer outHub;
+    DoubleBuffer outCost;
+    // Labels listing hubs that can reach each location ...
+    IntBuffer inStart;
+    IntBuffer inHub;
+    DoubleBuffer inCost;
+
+    // Constructor with the label arrays specified ...
+    HubLabelIndex(int size, IntBuffer outStart, IntBuffer outHub,
+		  DoubleBuffer outCost, IntBuffer inStart, IntBuffer inHub,
+		  DoubleBuffer inCost) {
+	this.size = size;
+	this.outStart = outStart;
+	this.outHub = outHub;
+	this.outCost = outCost;
+	this.inStart = inStart;
+	this.inHub = inHub;
+	this.inCost = inCost;
+    }
+
+    // Constructor with state space specified.  The labels are built
+    // immediately ...
+    public HubLabelIndex(Map stateSpace) {
+	LabelBuilder builder = new LabelBuilder(stateSpace);
+	builder.build();
+	this.size = builder.size;
+	int[] outCount = builder.outCount;
+	int[] inCount = builder.inCount;
+	this.outStart = IntBuffer.wrap(builder.start(outCount));
+	this.outHub
+	    = IntBuffer.wrap(builder.flattenHubs(builder.outHubs, outCount));
+	this.outCost = DoubleBuffer.wrap(builder.flattenCosts(builder.outCosts,
+							      outCount));
+	this.inStart = IntBuffer.wrap(builder.start(inCount));
+	this.inHub
+	    = IntBuffer.wrap(builder.flattenHubs(builder.inHubs, inCount));
+	this.inCost
+	    = DoubleBuffer.wrap(builder.flattenCosts(builder.inCosts, inCount));
+    }
+
+    // distance -- Return the cost of the shortest path from the given
+    // initial location to the given destination, or infinity if there is
+    // no such path.
+    public double distance(Location from, Location to) {
+	return (distance(from.id, to.id));
+    }
+
+    // distance -- Return the cost of the shortest path between the
+    // locations with the given identifiers, or infinity if there is no such
+    // path.
+    public double distance(int from, int to) {
+	if (from == to)
+	    return (0.0);
+	double best = Double.POSITIVE_INFINITY;
+	int i = outStart.get(from);
+	int iEnd = outStart.get(from + 1);
+	int j = inStart.get(to);
+	int jEnd = inStart.get(to + 1);
+	while ((i < iEnd) && (j < jEnd)) {
+	    int hi = outHub.get(i);
+	    int hj = inHub.get(j);
+	    if (hi < hj) {
+		i++;
+	    } else if (hi > hj) {
+		j++;
+	    } else {
+		best = Math.min(best, outCost.get(i) + inCost.get(j));
+		i++;
+		j++;
+	    }
+	}
+	return (best);
+    }
+
+    // entryCount -- Return the total number of label entries in the index.
+    public int entryCount() {
+	return (outStart.get(size) + inStart.get(size));
+    }
+
+    // write -- Write this index to the given stream in the binary format
+    // described above.
+    public void write(OutputStream str) throws IOException {
+	DataOutputStream out
+	    = new DataOutputStream(new BufferedOutputStream(str));
+	out.writeInt(MAGIC);
+	out.writeInt(size);
+	out.writeInt(outStart.get(size));
+	out.writeInt(inStart.get(size));
+	writeInts(out, outStart, size + 1);
+	writeInts(out, outHub, outStart.get(size));
+	writeInts(out, inStart, size + 1);
+	writeInts(out, inHub, inStart.get(size));
+	writeDoubles(out, outCost, outStart.get(size));
+	writeDoubles(out, inCost, inStart.get(size));
+	out.flush();
+    }
+
+    // write -- Write this index to the file with the given pathname.
+    // Return false on error.
+    public boolean write(String filename) {
+	try {
+	    FileOutputStream fileOut = new FileOutputStream(filename);
+	    try {
+		write(fileOut);
+	    } finally {
+		fileOut.close();
+	    }
+	    return (true);
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (false);
+	}
+    }
+
+    // map -- Return an index whose labels are read directly from the file
+    // with the given pathname, which is mapped into memory rather than
+    // read.  Return null on error.
+    public static HubLabelIndex map(String filename) {
+	try {
+	    RandomAccessFile file = new RandomAccessFile(filename, "r");
+	    try {
+		FileChannel channel = file.getChannel();
+		// The mapping remains valid after the channel is closed ...
+		return (map(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size())));
+	    } finally {
+		file.close();
+	    }
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (null);
+	}
+    }
+
+    // map -- Return an index whose labels are read directly from the given
+    // buffer, which holds an index in the binary format described above,
+    // starting at its current position.  Return null if the buffer does not
+    // hold an index.
+    public static HubLabelIndex map(ByteBuffer buffer) {
+	try {
+	    ByteBuffer bytes = buffer.slice();
+	    if (bytes.getInt(0) != MAGIC)
+		return (null);
+	    int n = bytes.getInt(4);
+	    int outEntries = bytes.getInt(8);
+	    int inEntries = bytes.getInt(12);
+	    int pos = 16;
+	    IntBuffer outStart = ints(bytes, pos, n + 1);
+	    pos += 4 * (n + 1);
+	    IntBuffer outHub = ints(bytes, pos, outEntries);
+	    pos += 4 * outEntries;
+	    IntBuffer inStart = ints(bytes, pos, n + 1);
+	    pos += 4 * (n + 1);
+	    IntBuffer inHub = ints(bytes, pos, inEntries);
+	    pos += 4 * inEntries;
+	    DoubleBuffer outCost = doubles(bytes, pos, outEntries);
+	    pos += 8 * outEntries;
+	    DoubleBuffer inCost = doubles(bytes, pos, inEntries);
+	    return (new HubLabelIndex(n, outStart, outHub, outCost,
+				      inStart, inHub, inCost));
+	} catch (RuntimeException e) {
+	    // The buffer is too short or otherwise malformed ...
+	    return (null);
+	}
+    }
+
+    // byteSize -- Return the number of bytes that this index occupies in
+    // the binary format described above.
+    public long byteSize() {
+	long entries = outStart.get(size) + inStart.get(size);
+	return (16L + (8L * (size + 1)) + (12L * entries));
+    }
+
+    // ints -- Return a view of the given number of integers in the given
+    // buffer, starting at the given byte offset.
+    static IntBuffer ints(ByteBuffer bytes, int offset, int count) {
+	ByteBuffer view = bytes.duplicate();
+	view.position(offset);
+	view.limit(offset + (4 * count));
+	return (view.slice().asIntBuffer());
+    }
+
+    // doubles -- Return a view of the given number of floating point
+    // numbers in the given buffer, starting at the given byte offset.
+    static DoubleBuffer doubles(ByteBuffer bytes, int offset, int count) {
+	ByteBuffer view = bytes.duplicate();
+	view.position(offset);
+	view.limit(offset + (8 * count));
+	return (view.slice().asDoubleBuffer());
+    }
+
+    // writeInts -- Write the first "count" integers of the given buffer.
+    static void writeInts(DataOutputStream out, IntBuffer buf, int count)
+	throws IOException {
+	for (int i = 0; i < count; i++)
+	    out.writeInt(buf.get(i));
+    }
+
+    // writeDoubles -- Write the first "count" numbers of the given buffer.
+    static void writeDoubles(DataOutputStream out, DoubleBuffer buf,
+			     int count) throws IOException {
+	for (int i = 0; i < count; i++)
+	    out.writeDouble(buf.get(i));
+    }
+
+}
+
+
+// LabelBuilder -- Build the hub labels for a map by pruned landmark
+// labeling, keeping each label in its own growable arrays until the labels
+// are flattened.
+class LabelBuilder {
+    int size;
+    ManyToManySearch graph;   // used for its compressed road arrays
+    int[] order;              // locations, by rank
+    int[][] outHubs;
+    double[][] outCosts;
+    int[] outCount;
+    int[][] inHubs;
+    double[][] inCosts;
+    int[] inCount;
+    // Search storage, reused for every search ...
+    double[] dist;
+    double[] hubCost;         // costs to or from the current hub, by rank
+    LocationHeap fringe;
+    int[] touched;
+    int sampleCount = 16;     // shortest path trees used to rank locations
+
+    // Constructor with state space specified ...
+    public LabelBuilder(Map stateSpace) {
+	this.size = stateSpace.locations.size();
+	this.graph = new ManyToManySearch(stateSpace);
+	this.outHubs = new int[size][];
+	this.outCosts = new double[size][];
+	this.outCount = new int[size];
+	this.inHubs = new int[size][];
+	this.inCosts = new double[size][];
+	this.inCount = new int[size];
+	this.dist = new double[size];
+	this.hubCost = new double[size];
+	this.fringe = new LocationHeap(size);
+	this.touched = new int[size];
+	Arrays.fill(dist, Double.POSITIVE_INFINITY);
+	Arrays.fill(hubCost, Double.POSITIVE_INFINITY);
+	// Rank the locations by importance ...
+	final long[] score = importance(stateSpace);
+	Integer[] byScore = new Integer[size];
+	for (int i = 0; i < size; i++)
+	    byScore[i] = i;
+	Arrays.sort(byScore, new Comparator<Integer>() {
+		public int compare(Integer a, Integer b) {
+		    if (score[a] != score[b])
+			return (Long.compare(score[b], score[a]));
+		    return (Integer.compare(degree(b), degree(a)));
+		}
+	    });
+	this.order = new int[size];
+	for (int i = 0; i < size; i++)
+	    order[i] = byScore[i];
+    }
+
+    // importance -- Return a score for each location estimating how many
+    // shortest paths pass through it.  Shortest path trees are built from a
+    // sample of origins, and each location scores the number of locations
+    // below it in those trees.  Locations on many shortest paths make the
+    // best hubs, since they cover the most paths and prune the most search.
+    long[] importance(Map stateSpace) {
+	long[] score = new long[size];
+	Random rnd = new Random(size);
+	int samples = Math.min(size, sampleCount);
+	for (int s = 0; s < samples; s++) {
+	    Location origin = stateSpace.locations.get(rnd.nextInt(size));
+	    ShortestPathTree tree = new ShortestPathTree(stateSpace, origin);
+	    // Visit the reached locations farthest first, passing the size of
+	    // each subtree up to its parent ...
+	    Integer[] reached = new Integer[tree.expansionCount];
+	    int k = 0;
+	    for (int i = 0; i < size; i++)
+		if (tree.dist[i] < Double.POSITIVE_INFINITY)
+		    reached[k++] = i;
+	    final double[] dist = tree.dist;
+	    Arrays.sort(reached, new Comparator<Integer>() {
+		    public int compare(Integer a, Integer b) {
+			return (Double.compare(dist[b], dist[a]));
+		    }
+		});
+	    long[] below = new long[size];
+	    for (int v : reached) {
+		below[v]++;
+		score[v] += below[v];
+		if (tree.parent[v] >= 0)
+		    below[tree.parent[v]] += below[v];
+	    }
+	}
+	return (score);
+    }
+
+    // degree -- Return the number of roads into and out of a location.
+    int degree(int loc) {
+	return ((graph.outStart[loc + 1] - graph.outStart[loc]) +
+		(graph.inStart[loc + 1] - graph.inStart[loc]));
+    }
+
+    // build -- Run the forward and backward pruned searches from every
+    // location, in rank order.
+    public void build() {
+	for (int rank = 0; rank < size; rank++) {
+	    prunedSearch(rank, false);
+	    prunedSearch(rank, true);
+	}
+    }
+
+    // prunedSearch -- Search from the location with the given rank, forward
+    // (adding the hub to "in" labels) or backward (adding it to "out"
+    // labels), pruning wherever the existing labels are already as good.
+    void prunedSearch(int rank, boolean backward) {
+	int hub = order[rank];
+	int[] start = backward ? graph.inStart : graph.outStart;
+	int[] next = backward ? graph.inFrom : graph.outTo;
+	double[] cost = backward ? graph.inCost : graph.outCost;
+	// Spread the hub's own label out by rank, for fast pruning tests.
+	// Going forward, paths from the hub use its "out" label ...
+	int[] hubLabel = backward ? inHubs[hub] : outHubs[hub];
+	double[] hubLabelCost = backward ? inCosts[hub] : outCosts[hub];
+	int hubLabelCount = backward ? inCount[hub] : outCount[hub];
+	for (int k = 0; k < hubLabelCount; k++)
+	    hubCost[hubLabel[k]] = hubLabelCost[k];
+	int touchedCount = 0;
+	fringe.clear();
+	dist[hub] = 0.0;
+	touched[touchedCount++] = hub;
+	fringe.insertOrLower(hub, 0.0);
+	while (!(fringe.isEmpty())) {
+	    int u = fringe.removeMin();
+	    double d = dist[u];
+	    if (labelDistance(u, backward) <= d)
+		// Already covered by a higher ranked hub ...
+		continue;
+	    if (backward)
+		addEntry(u, rank, d, outHubs, outCosts, outCount);
+	    else
+		addEntry(u, rank, d, inHubs, inCosts, inCount);
+	    for (int k = start[u]; k < start[u + 1]; k++) {
+		int v = next[k];
+		double g = d + cost[k];
+		if (g < dist[v]) {
+		    if (dist[v] == Double.POSITIVE_INFINITY)
+			touched[touchedCount++] = v;
+		    dist[v] = g;
+		    fringe.insertOrLower(v, g);
+		}
+	    }
+	}
+	// Reset the search storage ...
+	for (int k = 0; k < touchedCount; k++)
+	    dist[touched[k]] = Double.POSITIVE_INFINITY;
+	for (int k = 0; k < hubLabelCount; k++)
+	    hubCost[hubLabel[k]] = Double.POSITIVE_INFINITY;
+    }
+
+    // labelDistance -- Return the cost of the best path between the current
+    // hub and the given location that passes through a hub already labeled.
+    double labelDistance(int loc, boolean backward) {
+	int[] hubs = backward ? outHubs[loc] : inHubs[loc];
+	double[] costs = backward ? outCosts[loc] : inCosts[loc];
+	int count = backward ? outCount[loc] : inCount[loc];
+	double best = Double.POSITIVE_INFINITY;
+	for (int k = 0; k < count; k++)
+	    best = Math.min(best, hubCost[hubs[k]] + costs[k]);
+	return (best);
+    }
+
+    // addEntry -- Append an entry to the given label of the given location.
+    static void addEntry(int loc, int rank, double d, int[][] hubs,
+			 double[][] costs, int[] count) {
+	if (hubs[loc] == null) {
+	    hubs[loc] = new int[4];
+	    costs[loc] = new double[4];
+	} else if (count[loc] == hubs[loc].length) {
+	    hubs[loc] = Arrays.copyOf(hubs[loc], 2 * count[loc]);
+	    costs[loc] = Arrays.copyOf(costs[loc], 2 * count[loc]);
+	}
+	hubs[loc][count[loc]] = rank;
+	costs[loc][count[loc]] = d;
+	count[loc]++;
+    }
+
+    // start -- Return the starting position of each label in the flattened
+    // arrays, with the total number of entries at the end.
+    int[] start(int[] count) {
+	int[] result = new int[size + 1];
+	for (int i = 0; i < size; i++)
+	    result[i + 1] = result[i] + count[i];
+	return (result);
+    }
+
+    // flattenHubs -- Return the hub ranks of all labels, one after another.
+    int[] flattenHubs(int[][] hubs, int[] count) {
+	int[] starts = start(count);
+	int[] result = new int[starts[size]];
+	for (int i = 0; i < size; i++)
+	    if (count[i] > 0)
+		System.arraycopy(hubs[i], 0, result, starts[i], count[i]);
+	return (result);
+    }
+
+    // flattenCosts -- Return the costs of all labels, one after another.
+    double[] flattenCosts(double[][] costs, int[] count) {
+	int[] starts = start(count);
+	double[] result = new double[starts[size]];
+	for (int i = 0; i < size; i++)
+	    if (count[i] > 0)
+		System.arraycopy(costs[i], 0, result, starts[i], count[i]);
+	return (result);
+    }
+
+}
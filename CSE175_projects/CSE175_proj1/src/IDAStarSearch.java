@@ -0,0 +1,175 @@
+//
+// IDAStarSearch
+//
+// This class implements iterative deepening A* (IDA*) search over the
+// locations in a map.  Rather than keeping a frontier of every generated
+// node, each iteration performs a depth-first search that is cut off as
+// soon as the f-value (partial path cost plus heuristic value) of a node
+// exceeds the current bound.  The bound for the next iteration is the
+// smallest f-value that exceeded the previous bound, or the previous bound
+// raised by a fixed fraction, whichever is larger, so that real-valued road
+// costs do not force a separate iteration for every distinct f-value.
+// Since the bound may then overshoot the optimal cost, an iteration that
+// finds a solution keeps searching for cheaper ones, pruning any node whose
+// f-value is no better than the best solution found so far, and the
+// solution returned is optimal, given an admissible heuristic.  Repeated
+// states are avoided along the current path, and each iteration also keeps
+// a bounded transposition table, holding the lowest partial path cost with
+// which each location has been reached during that iteration, so that a
+// location reached again at no lower cost is not searched again.  Once the
+// table is full, no more locations are added to it.  Apart from the table,
+// only the nodes on the current path are kept in memory, so the memory
+// needed grows linearly with the depth of the solution.  The search is
+// depth-limited, in the same way as the other search classes, and objects
+// of this class maintain the total number of nodes expanded during the last
+// call to "search".
+//
+
+
+import java.util.*;
+
+
+public class IDAStarSearch {
+    Map stateSpace;
+    Heuristic heuristic;
+    public String startName;
+    public String finishName;
+    int depthLimit = 10000;
+    public int expansionCount = 0;
+    public int iterationCount = 0;
+    public ExpansionTrace trace = null;   // records expansions, if given
+    public double boundGrowth = 0.05;     // least fraction to raise bound
+    public int tableLimit = 1 << 16;      // transposition table entries
+    // Search state, valid only during an iteration ...
+    double bound = 0.0;
+    double nextBound = Double.POSITIVE_INFINITY;
+    Waypoint incumbent = null;            // best solution found so far
+    java.util.Map<Integer, Double> bestCost;
+
+    // Default constructor ...
+    public IDAStarSearch() {
+	this.stateSpace = null;
+	this.heuristic = new Heuristic();
+	this.startName = "";
+	this.finishName = "";
+	this.depthLimit = 10000;
+	this.expansionCount = 0;
+	this.iterationCount = 0;
+    }
+
+    // Constructor with state space, heuristic, and search parameters
+    // specified ...
+    public IDAStarSearch(Map stateSpace, Heuristic heuristic,
+			 String startName, String finishName, int depthLimit) {
+	this();
+	this.stateSpace = stateSpace;
+	this.heuristic = heuristic;
+	this.startName = startName;
+	this.finishName = finishName;
+	this.depthLimit = depthLimit;
+    }
+
+    // search -- Perform a sequence of f-bounded depth-first searches,
+    // raising the bound each time, until a solution is found or no node
+    // exceeded the bound (in which case there is no solution).  Return the
+    // goal node, or null on failure.
+    public Waypoint search() {
+	// Find initial and final locations ...
+	Location initialLoc = stateSpace.findLocation(startName);
+	Location finalLoc = stateSpace.findLocation(finishName);
+	if ((initialLoc == null) || (finalLoc == null))
+	    // Invalid location name, so return failure ...
+	    return (null);
+	heuristic.setDestination(finalLoc);
+	// Make the initial node ...
+	Waypoint initialNode = new Waypoint(initialLoc);
+	initialNode.heuristicValue = heuristic.heuristicFunction(initialNode);
+	// Initialize the counters ...
+	expansionCount = 0;
+	iterationCount = 0;
+	// The first bound is the f-value of the initial node ...
+	bound = initialNode.heuristicValue;
+	bestCost = new HashMap<Integer, Double>();
+	while (true) {
+	    iterationCount++;
+	    nextBound = Double.POSITIVE_INFINITY;
+	    incumbent = null;
+	    bestCost.clear();
+	    boundedSearch(initialNode);
+	    if (incumbent != null) {
+		// Every node with an f-value below the cost of this solution
+		// has been searched, so it is optimal ...
+		Waypoint result = incumbent;
+		incumbent = null;
+		bestCost.clear();
+		return (result);
+	    }
+	    if (nextBound == Double.POSITIVE_INFINITY)
+		// Nothing was cut off, so the whole space has been searched ...
+		return (null);
+	    bound = Math.max(nextBound, bound * (1.0 + boundGrowth));
+	}
+    }
+
+    // boundedSearch -- Perform a depth-first search below the given node,
+    // pruning any node with an f-value greater than the current bound, or
+    // no less than the cost of the best solution found so far, and any node
+    // whose location has already been reached at no greater cost during
+    // this iteration.  Solutions are recorded in "incumbent".
+    void boundedSearch(Waypoint node) {
+	double fValue = node.partialPathCost + node.heuristicValue;
+	if (fValue > bound) {
+	    // Record the smallest f-value that was cut off ...
+	    if (fValue < nextBound)
+		nextBound = fValue;
+	    return;
+	}
+	if ((incumbent != null) && (fValue >= incumbent.partialPathCost))
+	    return;
+	if (!(firstVisit(node)))
+	    return;
+	if (node.isFinalDestination(finishName)) {
+	    incumbent = node;
+	    return;
+	}
+	if (node.depth >= depthLimit)
+	    return;
+	expansionCount++;
+	if (trace != null)
+	    trace.record(node);
+	// The children are generated one at a time, rather than using
+	// "expand", so that only the current path is ever held in memory ...
+	for (Road r : node.loc.roads) {
+	    if (onPath(node, r.toLocation))
+		continue;
+	    Waypoint child = new Waypoint(r.toLocation, node);
+	    child.depth = node.depth + 1;
+	    child.partialPathCost = node.partialPathCost + r.cost;
+	    child.heuristicValue = heuristic.heuristicFunction(child);
+	    boundedSearch(child);
+	}
+    }
+
+    // firstVisit -- Return false if the location of the given node has
+    // already been reached, during this iteration, with a partial path cost
+    // no greater than that of the node.  Otherwise, record the node's cost
+    // in the transposition table, if there is room, and return true.
+    boolean firstVisit(Waypoint node) {
+	Double known = bestCost.get(node.loc.id);
+	if ((known != null) && (known.doubleValue() <= node.partialPathCost))
+	    return (false);
+	if ((known != null) || (bestCost.size() < tableLimit))
+	    bestCost.put(node.loc.id, node.partialPathCost);
+	return (true);
+    }
+
+    // onPath -- Return true if and only if the given location appears on
+    // the path from the root of the search tree to the given node.
+    static boolean onPath(Waypoint node, Location loc) {
+	for (Waypoint wp = node; wp != null; wp = wp.previous)
+	    if (wp.loc.equals(loc))
+		return (true);
+	return (false);
+    }
+
+}
@@ -0,0 +1,194 @@
+//
+// KShortestPathsSearch
+//
+// This class finds the k cheapest loopless paths from one location to
+// another, using Yen's algorithm.  The cheapest path is found first.  Each
+// later path is found by taking some prefix (the "root") of a path already
+// found, and searching for the cheapest way to finish the trip (the "spur")
+// from the end of that prefix, without reusing any location on the prefix
+// and without leaving the end of the prefix along any road already taken
+// by a found path with the same prefix.  The cheapest of the resulting
+// candidate paths is the next path.  Rather than searching from scratch
+// for each spur, a single reverse ShortestPathTree is built from the
+// destination.  Its costs to the destination serve as the heuristic for
+// A* searches for the spurs.  Since removing roads and locations can only
+// make paths longer, this heuristic is consistent, and it is exact unless
+// the spur must avoid the cheapest route, so each spur search expands
+// little more than the locations on the spur itself.  Objects of this class
+// maintain the total number of locations expanded during the last call to
+// "search".
+//
+
+
+import java.util.*;
+
+
+// CandidatePath -- A path, recorded as a list of roads, along with its cost.
+class CandidatePath {
+    List<Road> roads;
+    double cost;
+
+    // Constructor with roads specified ...
+    public CandidatePath(List<Road> roads) {
+	this.roads = roads;
+	this.cost = 0.0;
+	for (Road r : roads)
+	    this.cost += r.cost;
+    }
+
+}
+
+
+public class KShortestPathsSearch {
+    Map stateSpace;
+    public String startName;
+    public String finishName;
+    public int expansionCount = 0;
+    // Search state, valid only during a call to "search" ...
+    ShortestPathTree toFinish;
+    double[] g;
+    Road[] via;
+    boolean[] blocked;
+    boolean[] closed;
+    LocationHeap fringe;
+    Set<Road> removedRoads;
+
+    // Default constructor ...
+    public KShortestPathsSearch() {
+	this.stateSpace = null;
+	this.startName = "";
+	this.finishName = "";
+	this.expansionCount = 0;
+    }
+
+    // Constructor with state space and search parameters specified ...
+    public KShortestPathsSearch(Map stateSpace,
+				String startName, String finishName) {
+	this();
+	this.stateSpace = stateSpace;
+	this.startName = startName;
+	this.finishName = finishName;
+    }
+
+    // search -- Return the goal nodes at the ends of the (at most) k
+    // cheapest loopless paths from the initial location to the destination,
+    // in order of increasing partial path cost.  Return an empty list on
+    // failure.
+    public List<Waypoint> search(int k) {
+	List<Waypoint> solutions = new ArrayList<Waypoint>();
+	Location initialLoc = stateSpace.findLocation(startName);
+	Location finalLoc = stateSpace.findLocation(finishName);
+	if ((initialLoc == null) || (finalLoc == null) || (k <= 0))
+	    // Invalid location name, so return failure ...
+	    return (solutions);
+	// Initialize the search state ...
+	int size = stateSpace.locations.size();
+	toFinish = new ShortestPathTree(stateSpace, finalLoc, true);
+	expansionCount = toFinish.expansionCount;
+	g = new double[size];
+	via = new Road[size];
+	blocked = new boolean[size];
+	closed = new boolean[size];
+	fringe = new LocationHeap(size);
+	removedRoads = new HashSet<Road>();
+	// Find the cheapest path ...
+	List<Road> best = spur(initialLoc.id, finalLoc.id);
+	if (best == null)
+	    return (solutions);
+	List<CandidatePath> found = new ArrayList<CandidatePath>();
+	found.add(new CandidatePath(best));
+	PriorityQueue<CandidatePath> candidates
+	    = new PriorityQueue<CandidatePath>(11,
+					       new Comparator<CandidatePath>() {
+		    public int compare(CandidatePath p1, CandidatePath p2) {
+			return (Double.compare(p1.cost, p2.cost));
+		    }
+		});
+	Set<List<Road>> seen = new HashSet<List<Road>>();
+	seen.add(best);
+	while (found.size() < k) {
+	    List<Road> previous = found.get(found.size() - 1).roads;
+	    for (int i = 0; i < previous.size(); i++) {
+		List<Road> root = previous.subList(0, i);
+		int spurLoc = previous.get(i).fromLocation.id;
+		// Don't leave the spur location along a road already used by
+		// a found path with the same root ...
+		removedRoads.clear();
+		for (CandidatePath p : found)
+		    if ((p.roads.size() > i) && p.roads.subList(0, i).equals(root))
+			removedRoads.add(p.roads.get(i));
+		// Don't revisit any location on the root ...
+		Arrays.fill(blocked, false);
+		for (Road r : root)
+		    blocked[r.fromLocation.id] = true;
+		List<Road> spurPath = spur(spurLoc, finalLoc.id);
+		if (spurPath == null)
+		    continue;
+		List<Road> path = new ArrayList<Road>(root);
+		path.addAll(spurPath);
+		if (seen.add(path))
+		    candidates.add(new CandidatePath(path));
+	    }
+	    if (candidates.isEmpty())
+		// There are no more loopless paths ...
+		break;
+	    found.add(candidates.poll());
+	}
+	removedRoads.clear();
+	for (CandidatePath p : found)
+	    solutions.add(toWaypoint(initialLoc, p.roads));
+	return (solutions);
+    }
+
+    // spur -- Perform an A* search from the given location to the given
+    // destination, avoiding blocked locations and removed roads, and using
+    // the reverse shortest path tree costs as the heuristic.  Return the
+    // roads on the cheapest path found, or null if there is none.
+    List<Road> spur(int from, int to) {
+	double[] h = toFinish.dist;
+	Arrays.fill(g, Double.POSITIVE_INFINITY);
+	Arrays.fill(closed, false);
+	fringe.clear();
+	g[from] = 0.0;
+	via[from] = null;
+	fringe.insertOrLower(from, h[from]);
+	while (!(fringe.isEmpty())) {
+	    int u = fringe.removeMin();
+	    if (u == to) {
+		LinkedList<Road> path = new LinkedList<Road>();
+		for (int v = to; v != from; v = via[v].fromLocation.id)
+		    path.addFirst(via[v]);
+		return (path);
+	    }
+	    closed[u] = true;
+	    expansionCount++;
+	    for (Road r : stateSpace.locations.get(u).roads) {
+		int v = r.toLocation.id;
+		if (closed[v] || blocked[v] || removedRoads.contains(r) ||
+		    (h[v] == Double.POSITIVE_INFINITY))
+		    continue;
+		double cost = g[u] + r.cost;
+		if (cost < g[v]) {
+		    g[v] = cost;
+		    via[v] = r;
+		    fringe.insertOrLower(v, cost + h[v]);
+		}
+	    }
+	}
+	return (null);
+    }
+
+    // toWaypoint -- Return the goal node at the end of the given path from
+    // the given initial location.
+    static Waypoint toWaypoint(Location initialLoc, List<Road> roads) {
+	Waypoint node = new Waypoint(initialLoc);
+	for (Road r : roads) {
+	    Waypoint next = new Waypoint(r.toLocation, node);
+	    next.depth = node.depth + 1;
+	    next.partialPathCost = node.partialPathCost + r.cost;
+	    node = next;
+	}
+	return (node);
+    }
+
+}
@@ -0,0 +1,249 @@
+//
+// LPAStarSearch
+//
+// This class implements lifelong planning A* (LPA*), an incremental version
+// of A* search over the locations in a map.  For each location, the search
+// keeps the best known cost of reaching it from the initial location (its
+// "g" value) along with a one-step lookahead estimate of that cost, computed
+// from the "g" values of the locations leading into it (its "rhs" value).
+// Locations whose two values disagree are kept on a priority queue, sorted
+// much as in A* search.  These values are kept between calls to "search".
+// When the costs of some road segments change, only the locations at the
+// ends of those roads are placed back on the queue, and the next search
+// repairs only the part of the search tree affected by the change, rather
+// than searching again from scratch.  Road costs should be changed using
+// the "setRoadCost" method, or, if Road objects are modified directly, the
+// changed roads must be reported using the "roadsChanged" method.  A road
+// may be closed by giving it an infinite cost.  As with A* search, the
+// heuristic must remain consistent under the changed costs (i.e., no road
+// may become cheaper than the heuristic assumes).  If the initial location or
+// the destination location is changed, the search starts over.  Objects of
+// this class maintain the total number of locations expanded during the
+// last call to "search".
+//
+
+
+import java.util.*;
+
+
+public class LPAStarSearch {
+    Map stateSpace;
+    Heuristic heuristic;
+    public String startName;
+    public String finishName;
+    public int expansionCount = 0;
+    // Search state, kept between calls to "search" ...
+    boolean initialized = false;
+    Location startLoc;
+    Location finishLoc;
+    double[] g;
+    double[] rhs;
+    double[] h;
+    double[] key1;
+    double[] key2;
+    List<List<Road>> incoming;
+    TreeSet<Integer> queue;
+
+    // Default constructor ...
+    public LPAStarSearch() {
+	this.stateSpace = null;
+	this.heuristic = new Heuristic();
+	this.startName = "";
+	this.finishName = "";
+	this.expansionCount = 0;
+    }
+
+    // Constructor with state space, heuristic, and search parameters
+    // specified ...
+    public LPAStarSearch(Map stateSpace, Heuristic heuristic,
+			 String startName, String finishName) {
+	this();
+	this.stateSpace = stateSpace;
+	this.heuristic = heuristic;
+	this.startName = startName;
+	this.finishName = finishName;
+    }
+
+    // setRoadCost -- Change the cost of the given road segment, and note the
+    // change so that the next search takes it into account.
+    public void setRoadCost(Road r, double cost) {
+	r.cost = cost;
+	stateSpace.noteModification();
+	if (initialized)
+	    updateLocation(r.toLocation.id);
+    }
+
+    // roadsChanged -- Note that the costs of the given road segments have
+    // been changed, so that the next search takes the changes into account.
+    public void roadsChanged(Collection<Road> roads) {
+	stateSpace.noteModification();
+	if (initialized) {
+	    for (Road r : roads)
+		updateLocation(r.toLocation.id);
+	}
+    }
+
+    // search -- Bring the search tree up to date with any changes in road
+    // costs, and return the goal node at the end of a shortest path from the
+    // initial location to the destination.  Return null on failure.
+    public Waypoint search() {
+	expansionCount = 0;
+	if (!initialized ||
+	    !(startLoc.name.equals(startName)) ||
+	    !(finishLoc.name.equals(finishName))) {
+	    // Start a new search ...
+	    if (!(initialize()))
+		return (null);
+	}
+	computeShortestPath();
+	return (extractPath());
+    }
+
+    // initialize -- Set up the search state for a new search.  Return false
+    // if either the initial or the destination location is unknown.
+    boolean initialize() {
+	initialized = false;
+	startLoc = stateSpace.findLocation(startName);
+	finishLoc = stateSpace.findLocation(finishName);
+	if ((startLoc == null) || (finishLoc == null))
+	    // Invalid location name, so return failure ...
+	    return (false);
+	heuristic.setDestination(finishLoc);
+	int size = stateSpace.locations.size();
+	g = new double[size];
+	rhs = new double[size];
+	h = new double[size];
+	key1 = new double[size];
+	key2 = new double[size];
+	Arrays.fill(g, Double.POSITIVE_INFINITY);
+	Arrays.fill(rhs, Double.POSITIVE_INFINITY);
+	Arrays.fill(h, Double.NaN);
+	// The map only records the roads leading out of each location, so
+	// collect the roads leading into each location ...
+	incoming = ShortestPathTree.incomingRoads(stateSpace);
+	queue = new TreeSet<Integer>(new Comparator<Integer>() {
+		public int compare(Integer a, Integer b) {
+		    return (compareKeys(a, b));
+		}
+	    });
+	rhs[startLoc.id] = 0.0;
+	setKey(startLoc.id);
+	queue.add(startLoc.id);
+	initialized = true;
+	return (true);
+    }
+
+    // computeShortestPath -- Expand locations on the queue until the
+    // destination's values agree and no location on the queue could lead
+    // to a cheaper path to it.
+    void computeShortestPath() {
+	int goal = finishLoc.id;
+	while (!(queue.isEmpty())) {
+	    int u = queue.first();
+	    double goalKey2 = Math.min(g[goal], rhs[goal]);
+	    double goalKey1 = goalKey2 + heuristicValue(goal);
+	    if (((key1[u] > goalKey1) ||
+		 ((key1[u] == goalKey1) && (key2[u] >= goalKey2))) &&
+		(rhs[goal] == g[goal]))
+		break;
+	    queue.pollFirst();
+	    expansionCount++;
+	    Location loc = stateSpace.locations.get(u);
+	    if (g[u] > rhs[u]) {
+		// The location's cost went down, so settle it ...
+		g[u] = rhs[u];
+	    } else {
+		// The location's cost went up, so its successors (and the
+		// location itself) need to be reconsidered ...
+		g[u] = Double.POSITIVE_INFINITY;
+		updateLocation(u);
+	    }
+	    for (Road r : loc.roads)
+		updateLocation(r.toLocation.id);
+	}
+    }
+
+    // updateLocation -- Recompute the one-step lookahead cost of the given
+    // location, and make sure it is on the queue if and only if that cost
+    // disagrees with its current cost.
+    void updateLocation(int v) {
+	if (v != startLoc.id) {
+	    double best = Double.POSITIVE_INFINITY;
+	    for (Road r : incoming.get(v)) {
+		double cost = g[r.fromLocation.id] + r.cost;
+		if (cost < best)
+		    best = cost;
+	    }
+	    rhs[v] = best;
+	}
+	queue.remove(v);
+	if (g[v] != rhs[v]) {
+	    setKey(v);
+	    queue.add(v);
+	}
+    }
+
+    // extractPath -- Follow the cheapest roads backward from the destination
+    // to the initial location, and return the corresponding goal node.
+    // Return null if the destination can't be reached.
+    Waypoint extractPath() {
+	int goal = finishLoc.id;
+	if (g[goal] == Double.POSITIVE_INFINITY)
+	    return (null);
+	LinkedList<Road> path = new LinkedList<Road>();
+	int v = goal;
+	while (v != startLoc.id) {
+	    Road best = null;
+	    double bestCost = Double.POSITIVE_INFINITY;
+	    for (Road r : incoming.get(v)) {
+		double cost = g[r.fromLocation.id] + r.cost;
+		if (cost < bestCost) {
+		    best = r;
+		    bestCost = cost;
+		}
+	    }
+	    if ((best == null) || (path.size() >= g.length))
+		// This should not happen if the costs are consistent ...
+		return (null);
+	    path.addFirst(best);
+	    v = best.fromLocation.id;
+	}
+	// Build the search tree nodes along the path ...
+	Waypoint node = new Waypoint(startLoc);
+	node.heuristicValue = heuristicValue(startLoc.id);
+	for (Road r : path) {
+	    Waypoint next = new Waypoint(r.toLocation, node);
+	    next.depth = node.depth + 1;
+	    next.partialPathCost = node.partialPathCost + r.cost;
+	    next.heuristicValue = heuristicValue(r.toLocation.id);
+	    node = next;
+	}
+	return (node);
+    }
+
+    // heuristicValue -- Return the heuristic value of the given location,
+    // computing it only once per search.
+    double heuristicValue(int v) {
+	if (Double.isNaN(h[v]))
+	    h[v] = heuristic.heuristicFunction(
+			  new Waypoint(stateSpace.locations.get(v)));
+	return (h[v]);
+    }
+
+    // setKey -- Compute the queue sorting key of the given location.
+    void setKey(int v) {
+	key2[v] = Math.min(g[v], rhs[v]);
+	key1[v] = key2[v] + heuristicValue(v);
+    }
+
+    // compareKeys -- Compare the queue sorting keys of two locations, in
+    // the manner of the Comparator protocol.
+    int compareKeys(int a, int b) {
+	if (key1[a] != key1[b])
+	    return ((key1[a] < key1[b]) ? -1 : 1);
+	if (key2[a] != key2[b])
+	    return ((key2[a] < key2[b]) ? -1 : 1);
+	return (Integer.compare(a, b));
+    }
+
+}
@@ -0,0 +1,199 @@
+//
+// LandmarkHeuristic
+//
+// This class extends the Heuristic class, providing a heuristic function
+// based on precomputed shortest path costs to and from a few "landmark"
+// locations.  By the triangle inequality, the cost of getting from a
+// location to the destination is at least the difference between the
+// landmark's costs to (or from) the two, so the largest such difference,
+// over all of the landmarks, is an admissible and consistent heuristic
+// value.  It is infinite for locations that cannot reach the destination.
+// Landmarks are chosen to be far apart, each being the location farthest
+// from those already chosen, so that some landmark lies roughly "behind"
+// most destinations.  The cost tables hold one row of costs for each
+// landmark, and they are kept in buffers, so that they may be read directly
+// from a file that has been mapped into memory.  The tables can be written
+// in a binary format holding the number of locations and the number of
+// landmarks, as 32-bit integers, followed by the landmark identifiers, and
+// then the costs from each landmark and the costs to each landmark, as
+// 64-bit floating point numbers.
+//
+
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+
+public class LandmarkHeuristic extends Heuristic {
+    static final int MAGIC = 0x4c4d4b31;   // "LMK1"
+    int size = 0;
+    int[] landmarks;
+    DoubleBuffer fromLandmark;   // cost from landmark i to location v at
+				 // position (i * size) + v
+    DoubleBuffer toLandmark;     // cost from location v to landmark i
+    // Costs between the landmarks and the destination ...
+    double[] fromToDestination;
+    double[] toFromDestination;
+
+    // Constructor with the landmark tables specified ...
+    LandmarkHeuristic(int size, int[] landmarks, DoubleBuffer fromLandmark,
+		      DoubleBuffer toLandmark) {
+	super();
+	this.size = size;
+	this.landmarks = landmarks;
+	this.fromLandmark = fromLandmark;
+	this.toLandmark = toLandmark;
+	this.fromToDestination = new double[landmarks.length];
+	this.toFromDestination = new double[landmarks.length];
+    }
+
+    // Constructor with state space and number of landmarks specified.  The
+    // landmarks are chosen, and the tables built, immediately ...
+    public LandmarkHeuristic(Map stateSpace, int count) {
+	this(stateSpace.locations.size(),
+	     new int[Math.min(count, stateSpace.locations.size())],
+	     null, null);
+	int k = landmarks.length;
+	double[] from = new double[k * size];
+	double[] to = new double[k * size];
+	// The first landmark is the location farthest from an arbitrary
+	// one, and each later landmark is the location farthest from those
+	// already chosen ...
+	double[] nearest = new double[size];
+	Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+	int next = (size > 0) ?
+	    farthest(new ShortestPathTree(stateSpace,
+					  stateSpace.locations.get(0)).dist,
+		     nearest)
+	    : 0;
+	for (int i = 0; i < k; i++) {
+	    landmarks[i] = next;
+	    Location loc = stateSpace.locations.get(next);
+	    ShortestPathTree forward = new ShortestPathTree(stateSpace, loc);
+	    ShortestPathTree backward
+		= new ShortestPathTree(stateSpace, loc, true);
+	    System.arraycopy(forward.dist, 0, from, i * size, size);
+	    System.arraycopy(backward.dist, 0, to, i * size, size);
+	    for (int v = 0; v < size; v++)
+		nearest[v] = Math.min(nearest[v], forward.dist[v]);
+	    next = farthest(nearest, nearest);
+	}
+	this.fromLandmark = DoubleBuffer.wrap(from);
+	this.toLandmark = DoubleBuffer.wrap(to);
+    }
+
+    // copy -- Return a heuristic sharing this one's landmark tables, but
+    // with its own destination, so that searches for different
+    // destinations may run at the same time.
+    public LandmarkHeuristic copy() {
+	LandmarkHeuristic h
+	    = new LandmarkHeuristic(size, landmarks, fromLandmark.duplicate(),
+				    toLandmark.duplicate());
+	h.setDestination(destination);
+	return (h);
+    }
+
+    // farthest -- Return the location with the largest finite cost in the
+    // given table, among those not already chosen (i.e., with a nonzero
+    // cost in "chosen").
+    static int farthest(double[] cost, double[] chosen) {
+	int best = 0;
+	double bestCost = -1.0;
+	for (int v = 0; v < cost.length; v++) {
+	    if ((cost[v] < Double.POSITIVE_INFINITY) && (cost[v] > bestCost) &&
+		(chosen[v] > 0.0)) {
+		best = v;
+		bestCost = cost[v];
+	    }
+	}
+	return (best);
+    }
+
+    // setDestination -- Set the destination location to be used by this
+    // heuristic function to the given location, looking up its costs to
+    // and from the landmarks.
+    public void setDestination(Location destination) {
+	super.setDestination(destination);
+	if (destination == null)
+	    return;
+	for (int i = 0; i < landmarks.length; i++) {
+	    int index = (i * size) + destination.id;
+	    fromToDestination[i] = fromLandmark.get(index);
+	    toFromDestination[i] = toLandmark.get(index);
+	}
+    }
+
+    // heuristicFunction -- Return the appropriate heuristic values for the
+    // given search tree node.  Note that the given Waypoint should not be
+    // modified within the body of this function.
+    public double heuristicFunction(Waypoint wp) {
+	return (estimate(wp.loc.id));
+    }
+
+    // estimate -- Return the heuristic value for the location with the
+    // given identifier.
+    public double estimate(int loc) {
+	double hVal = 0.0;
+	for (int i = 0; i < landmarks.length; i++) {
+	    int base = i * size;
+	    // Landmark, then location, then destination.  An infinite
+	    // difference means that the destination cannot be reached ...
+	    double d = fromToDestination[i] - fromLandmark.get(base + loc);
+	    if (d > hVal)
+		hVal = d;
+	    // Location, then destination, then landmark ...
+	    d = toLandmark.get(base + loc) - toFromDestination[i];
+	    if (d > hVal)
+		hVal = d;
+	}
+	return (hVal);
+    }
+
+    // write -- Write the landmark tables to the given stream in the binary
+    // format described above.
+    public void write(OutputStream str) throws IOException {
+	DataOutputStream out
+	    = new DataOutputStream(new BufferedOutputStream(str));
+	out.writeInt(MAGIC);
+	out.writeInt(size);
+	out.writeInt(landmarks.length);
+	out.writeInt(0);   // padding, so that the costs are aligned
+	for (int l : landmarks)
+	    out.writeInt(l);
+	if ((landmarks.length % 2) != 0)
+	    out.writeInt(0);
+	int entries = landmarks.length * size;
+	for (int i = 0; i < entries; i++)
+	    out.writeDouble(fromLandmark.get(i));
+	for (int i = 0; i < entries; i++)
+	    out.writeDouble(toLandmark.get(i));
+	out.flush();
+    }
+
+    // map -- Return a heuristic whose tables are read directly from the
+    // given buffer, which holds tables in the binary format described
+    // above, starting at its current position.  Return null if the buffer
+    // does not hold landmark tables.
+    public static LandmarkHeuristic map(ByteBuffer buffer) {
+	try {
+	    ByteBuffer bytes = buffer.slice();
+	    if (bytes.getInt(0) != MAGIC)
+		return (null);
+	    int n = bytes.getInt(4);
+	    int k = bytes.getInt(8);
+	    int[] landmarks = new int[k];
+	    for (int i = 0; i < k; i++)
+		landmarks[i] = bytes.getInt(16 + (4 * i));
+	    int pos = 16 + (4 * (k + (k % 2)));
+	    DoubleBuffer from = HubLabelIndex.doubles(bytes, pos, k * n);
+	    pos += 8 * k * n;
+	    DoubleBuffer to = HubLabelIndex.doubles(bytes, pos, k * n);
+	    return (new LandmarkHeuristic(n, landmarks, from, to));
+	} catch (RuntimeException e) {
+	    // The buffer is too short or otherwise malformed ...
+	    return (null);
+	}
+    }
+
+}
@@ -7,7 +7,9 @@
 // coordinates, and a collection of Road objects which encode the immediate
 // routes leading away from this location.  Note that textual names are
 // assumed to be unique; two locations are considered the same if they have
-// the same name.
+// the same name.  Once a location is recorded in a Map, it is also given a
+// small integer identifier, its position in the map's list of locations, so
+// that search algorithms can keep per-location values in plain arrays.
 //
 // David Noelle -- Sun Feb 11 17:37:21 PST 2007
 //
@@ -22,6 +24,7 @@ public class Location {
     public double longitude = 0.0;
     public double latitude = 0.0;
     public List<Road> roads;
+    public int id = -1;    // position in the map's list of locations
 
     // Default constructor ...
     public Location() {
@@ -0,0 +1,235 @@
+//
+// LocationGrid
+//
+// This class implements a spatial index over the locations on a map, so
+// that the locations closest to a given point can be found without
+// examining every location.  The bounding box of the locations is divided
+// into a uniform grid of square cells, sized so that there are only a
+// couple of locations in each cell, on average, and each location is
+// recorded in the cell containing its coordinates.  Nearest-location
+// queries examine the cell containing the query point and then rings of
+// cells around it, stopping as soon as no unexamined cell could hold a
+// closer location.  Queries for all locations within a given distance of
+// a point, or within a given bounding box, examine only the cells that
+// overlap the query region.  Distances are straight-line distances between
+// the Cartesian coordinates of locations.  The index is a snapshot of the
+// locations on the map at the time that it is built.
+//
+
+
+import java.util.*;
+
+
+public class LocationGrid {
+    List<Location> locations;
+    double minX = 0.0;
+    double minY = 0.0;
+    double cellSize = 1.0;
+    int columns = 1;
+    int rows = 1;
+    int[] cellStart;      // index into cellItems of each cell's first entry
+    int[] cellItems;      // location identifiers, grouped by cell
+
+    // Constructor with the locations to be indexed specified ...
+    public LocationGrid(List<Location> locations) {
+	this.locations = new ArrayList<Location>(locations);
+	int n = this.locations.size();
+	if (n > 0) {
+	    double maxX = Double.NEGATIVE_INFINITY;
+	    double maxY = Double.NEGATIVE_INFINITY;
+	    minX = Double.POSITIVE_INFINITY;
+	    minY = Double.POSITIVE_INFINITY;
+	    for (Location loc : this.locations) {
+		minX = Math.min(minX, loc.longitude);
+		minY = Math.min(minY, loc.latitude);
+		maxX = Math.max(maxX, loc.longitude);
+		maxY = Math.max(maxY, loc.latitude);
+	    }
+	    // Aim for about two locations per cell ...
+	    double width = Math.max(maxX - minX, 1e-9);
+	    double height = Math.max(maxY - minY, 1e-9);
+	    cellSize = Math.sqrt((width * height * 2.0) / n);
+	    cellSize = Math.max(cellSize, Math.max(width, height) / 4096.0);
+	    columns = (int) (width / cellSize) + 1;
+	    rows = (int) (height / cellSize) + 1;
+	}
+	// Group the locations by cell ...
+	cellStart = new int[(columns * rows) + 1];
+	cellItems = new int[n];
+	int[] cellOf = new int[n];
+	for (int i = 0; i < n; i++) {
+	    Location loc = this.locations.get(i);
+	    cellOf[i] = cell(column(loc.longitude), row(loc.latitude));
+	    cellStart[cellOf[i] + 1]++;
+	}
+	for (int c = 0; c < columns * rows; c++)
+	    cellStart[c + 1] += cellStart[c];
+	int[] next = Arrays.copyOf(cellStart, columns * rows);
+	for (int i = 0; i < n; i++)
+	    cellItems[next[cellOf[i]]++] = i;
+    }
+
+    // nearest -- Return the location closest to the given point, or null if
+    // there are no locations.
+    public Location nearest(double longitude, double latitude) {
+	List<Location> closest = nearest(longitude, latitude, 1);
+	return (closest.isEmpty() ? null : closest.get(0));
+    }
+
+    // nearest -- Return the k locations closest to the given point, in order
+    // of increasing distance.  Fewer are returned if there are fewer than k
+    // locations in all.
+    public List<Location> nearest(double longitude, double latitude, int k) {
+	// Keep the best k found so far, with the farthest on top ...
+	PriorityQueue<double[]> best
+	    = new PriorityQueue<double[]>(Math.max(1, k),
+					  new Comparator<double[]>() {
+		    public int compare(double[] a, double[] b) {
+			return (Double.compare(b[0], a[0]));
+		    }
+		});
+	int cx = clamp(column(longitude), columns);
+	int cy = clamp(row(latitude), rows);
+	for (int r = 0; k > 0; r++) {
+	    // Examine the cells in the ring at distance r from the center ...
+	    for (int x = cx - r; x <= cx + r; x++) {
+		for (int y = cy - r; y <= cy + r; y++) {
+		    if ((Math.abs(x - cx) != r) && (Math.abs(y - cy) != r))
+			continue;
+		    if ((x < 0) || (x >= columns) || (y < 0) || (y >= rows))
+			continue;
+		    int c = cell(x, y);
+		    for (int j = cellStart[c]; j < cellStart[c + 1]; j++) {
+			double d = distance(cellItems[j], longitude, latitude);
+			if (best.size() < k) {
+			    best.add(new double[] { d, cellItems[j] });
+			} else if (d < best.peek()[0]) {
+			    best.poll();
+			    best.add(new double[] { d, cellItems[j] });
+			}
+		    }
+		}
+	    }
+	    // Stop when no cell outside of the examined block could hold a
+	    // closer location ...
+	    double bound = outsideDistance(cx - r, cy - r, cx + r, cy + r,
+					   longitude, latitude);
+	    if (bound == Double.POSITIVE_INFINITY)
+		break;
+	    if ((best.size() == k) && (bound >= best.peek()[0]))
+		break;
+	}
+	LinkedList<Location> result = new LinkedList<Location>();
+	while (!(best.isEmpty()))
+	    result.addFirst(locations.get((int) best.poll()[1]));
+	return (result);
+    }
+
+    // withinRadius -- Return all of the locations within the given distance
+    // of the given point, in order of increasing distance.  Only the cells
+    // overlapping the square around the circle are examined, and each
+    // location found is sorted along with its distance.
+    public List<Location> withinRadius(double longitude, double latitude,
+				       double radius) {
+	List<double[]> found = new ArrayList<double[]>();
+	int x0 = clamp(column(longitude - radius), columns);
+	int x1 = clamp(column(longitude + radius), columns);
+	int y0 = clamp(row(latitude - radius), rows);
+	int y1 = clamp(row(latitude + radius), rows);
+	for (int x = x0; x <= x1; x++) {
+	    for (int y = y0; y <= y1; y++) {
+		int c = cell(x, y);
+		for (int j = cellStart[c]; j < cellStart[c + 1]; j++) {
+		    double d = distance(cellItems[j], longitude, latitude);
+		    if (d <= radius)
+			found.add(new double[] { d, cellItems[j] });
+		}
+	    }
+	}
+	Collections.sort(found, new Comparator<double[]>() {
+		public int compare(double[] a, double[] b) {
+		    return (Double.compare(a[0], b[0]));
+		}
+	    });
+	List<Location> result = new ArrayList<Location>(found.size());
+	for (double[] entry : found)
+	    result.add(locations.get((int) entry[1]));
+	return (result);
+    }
+
+    // withinBox -- Return all of the locations inside the given bounding
+    // box, in no particular order.
+    public List<Location> withinBox(double minLongitude, double minLatitude,
+				    double maxLongitude, double maxLatitude) {
+	List<Location> found = new ArrayList<Location>();
+	int x0 = clamp(column(minLongitude), columns);
+	int x1 = clamp(column(maxLongitude), columns);
+	int y0 = clamp(row(minLatitude), rows);
+	int y1 = clamp(row(maxLatitude), rows);
+	for (int x = x0; x <= x1; x++) {
+	    for (int y = y0; y <= y1; y++) {
+		int c = cell(x, y);
+		for (int j = cellStart[c]; j < cellStart[c + 1]; j++) {
+		    Location loc = locations.get(cellItems[j]);
+		    if ((loc.longitude >= minLongitude) &&
+			(loc.longitude <= maxLongitude) &&
+			(loc.latitude >= minLatitude) &&
+			(loc.latitude <= maxLatitude))
+			found.add(loc);
+		}
+	    }
+	}
+	return (found);
+    }
+
+    // outsideDistance -- Return a lower bound on the distance from the given
+    // point to any cell of the grid outside of the given block of cells, or
+    // infinity if the block covers the whole grid.
+    double outsideDistance(int x0, int y0, int x1, int y1,
+			   double longitude, double latitude) {
+	double bound = Double.POSITIVE_INFINITY;
+	if (x0 > 0)
+	    bound = Math.min(bound, Math.max(0.0, longitude
+					     - (minX + x0 * cellSize)));
+	if (x1 < columns - 1)
+	    bound = Math.min(bound, Math.max(0.0, (minX + (x1 + 1) * cellSize)
+					     - longitude));
+	if (y0 > 0)
+	    bound = Math.min(bound, Math.max(0.0, latitude
+					     - (minY + y0 * cellSize)));
+	if (y1 < rows - 1)
+	    bound = Math.min(bound, Math.max(0.0, (minY + (y1 + 1) * cellSize)
+					     - latitude));
+	return (bound);
+    }
+
+    // distance -- Return the straight-line distance from the indexed
+    // location with the given position to the given point.
+    double distance(int i, double longitude, double latitude) {
+	Location loc = locations.get(i);
+	double dx = loc.longitude - longitude;
+	double dy = loc.latitude - latitude;
+	return (Math.sqrt((dx * dx) + (dy * dy)));
+    }
+
+    // column -- Return the grid column containing the given longitude.
+    int column(double longitude) {
+	return ((int) Math.floor((longitude - minX) / cellSize));
+    }
+
+    // row -- Return the grid row containing the given latitude.
+    int row(double latitude) {
+	return ((int) Math.floor((latitude - minY) / cellSize));
+    }
+
+    // cell -- Return the index of the cell at the given column and row.
+    int cell(int x, int y) {
+	return ((y * columns) + x);
+    }
+
+    // clamp -- Return the given grid coordinate, limited to the grid.
+    static int clamp(int i, int limit) {
+	return ((i < 0) ? 0 : ((i >= limit) ? limit - 1 : i));
+    }
+
+}
@@ -0,0 +1,132 @@
+//
+// LocationHeap
+//
+// This class implements a binary heap of location identifiers, sorted by a
+// double precision key for each location, with the smallest key at the
+// top.  Each location appears in the heap at most once, and the position
+// of each location in the heap is recorded, so that the key of a location
+// already in the heap can be lowered in place.  This is the priority queue
+// of choice for search algorithms that keep their per-location values in
+// arrays indexed by location identifier, rather than in Waypoint objects.
+// Nothing is allocated once the heap has been created, so a heap may be
+// cleared and reused for many searches over the same map.
+//
+
+
+import java.util.*;
+
+
+public class LocationHeap {
+    int[] heap;
+    int[] position;   // -1 for locations not in the heap
+    double[] key;
+    int size = 0;
+
+    // Constructor with the number of locations specified ...
+    public LocationHeap(int capacity) {
+	this.heap = new int[capacity];
+	this.position = new int[capacity];
+	this.key = new double[capacity];
+	Arrays.fill(position, -1);
+    }
+
+    // isEmpty -- Return true if and only if the heap is empty.
+    public boolean isEmpty() {
+	return (size == 0);
+    }
+
+    // contains -- Return true if and only if the given location is in the
+    // heap.
+    public boolean contains(int loc) {
+	return (position[loc] >= 0);
+    }
+
+    // minKey -- Return the smallest key in the heap.
+    public double minKey() {
+	return (key[heap[0]]);
+    }
+
+    // keyOf -- Return the key of the given location, which must be in the
+    // heap.
+    public double keyOf(int loc) {
+	return (key[loc]);
+    }
+
+    // insertOrLower -- Add the given location to the heap with the given
+    // key, or, if it is already in the heap, lower its key to the given
+    // key.  Return true if the heap was changed.
+    public boolean insertOrLower(int loc, double k) {
+	if (position[loc] < 0) {
+	    key[loc] = k;
+	    heap[size] = loc;
+	    position[loc] = size;
+	    size++;
+	    siftUp(size - 1);
+	    return (true);
+	}
+	if (k < key[loc]) {
+	    key[loc] = k;
+	    siftUp(position[loc]);
+	    return (true);
+	}
+	return (false);
+    }
+
+    // removeMin -- Remove the location with the smallest key from the heap,
+    // and return it.
+    public int removeMin() {
+	int top = heap[0];
+	position[top] = -1;
+	size--;
+	if (size > 0) {
+	    heap[0] = heap[size];
+	    position[heap[0]] = 0;
+	    siftDown(0);
+	}
+	return (top);
+    }
+
+    // clear -- Remove every location from the heap.
+    public void clear() {
+	for (int i = 0; i < size; i++)
+	    position[heap[i]] = -1;
+	size = 0;
+    }
+
+    // siftUp -- Move the entry at the given position up the heap until its
+    // parent has a smaller key.
+    void siftUp(int i) {
+	int loc = heap[i];
+	while (i > 0) {
+	    int parent = (i - 1) / 2;
+	    if (key[heap[parent]] <= key[loc])
+		break;
+	    heap[i] = heap[parent];
+	    position[heap[i]] = i;
+	    i = parent;
+	}
+	heap[i] = loc;
+	position[loc] = i;
+    }
+
+    // siftDown -- Move the entry at the given position down the heap until
+    // its children have larger keys.
+    void siftDown(int i) {
+	int loc = heap[i];
+	while (true) {
+	    int child = 2 * i + 1;
+	    if (child >= size)
+		break;
+	    if ((child + 1 < size) && (key[heap[child + 1]] < key[heap[child]]))
+		child++;
+	    if (key[heap[child]] >= key[loc])
+		break;
+	    heap[i] = heap[child];
+	    position[heap[i]] = i;
+	    i = child;
+	}
+	heap[i] = loc;
+	position[loc] = i;
+    }
+
+}
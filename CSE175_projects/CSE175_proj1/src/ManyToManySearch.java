@@ -0,0 +1,253 @@
+//
+// ManyToManySearch
+//
+// This class computes a table of shortest path costs between every location
+// in a list of sources and every location in a list of targets.  Rather
+// than performing a separate search for each pair of locations, it runs one
+// uniform-cost search for each row or each column of the table, whichever
+// is fewer.  Each search runs forward from a source (or backward, along
+// roads in reverse, from a target) and stops as soon as every location on
+// the other side of the table has been expanded.  The searches are
+// independent, so they are spread over the threads of a fork/join pool.
+// The roads of the map are copied into compact arrays when an object of
+// this class is created, so later changes to the map are not seen.  The
+// table can be returned as an array of rows, or written to a binary file.
+// When the searches start at the sources, the file is written a block of
+// rows at a time; when they start at the targets, every search fills in a
+// whole column, so the table is computed once and then written.  The file
+// holds the number of rows and the number of columns, as 32-bit integers,
+// followed by the costs, as 64-bit floating point numbers, one row after
+// another.  Unreachable pairs have infinite cost.
+//
+
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+// MatrixTask -- Fill in the table for a range of searches, splitting the
+// range in half until it is small enough to handle directly.
+class MatrixTask extends RecursiveAction {
+    static final long serialVersionUID = 1;  // Version 1
+    ManyToManySearch engine;
+    int[] origins;
+    int[] goals;
+    boolean backward;
+    double[][] table;
+    int low;
+    int high;
+
+    // Constructor with the range of searches specified ...
+    public MatrixTask(ManyToManySearch engine, int[] origins, int[] goals,
+		      boolean backward, double[][] table, int low, int high) {
+	this.engine = engine;
+	this.origins = origins;
+	this.goals = goals;
+	this.backward = backward;
+	this.table = table;
+	this.low = low;
+	this.high = high;
+    }
+
+    // compute -- Perform the searches in this task's range.
+    protected void compute() {
+	if (high - low > engine.chunkSize) {
+	    int middle = (low + high) / 2;
+	    invokeAll(new MatrixTask(engine, origins, goals, backward, table,
+				     low, middle),
+		      new MatrixTask(engine, origins, goals, backward, table,
+				     middle, high));
+	    return;
+	}
+	// The search storage is allocated once and reused for the whole
+	// range ...
+	int size = engine.outStart.length - 1;
+	double[] dist = new double[size];
+	LocationHeap fringe = new LocationHeap(size);
+	boolean[] isGoal = new boolean[size];
+	int distinctGoals = 0;
+	for (int g : goals) {
+	    if (!isGoal[g]) {
+		isGoal[g] = true;
+		distinctGoals++;
+	    }
+	}
+	double[] costs = new double[goals.length];
+	for (int i = low; i < high; i++) {
+	    engine.search(origins[i], backward, isGoal, distinctGoals,
+			  dist, fringe);
+	    for (int j = 0; j < goals.length; j++)
+		costs[j] = dist[goals[j]];
+	    if (backward) {
+		// Each search fills in a column of the table ...
+		for (int j = 0; j < goals.length; j++)
+		    table[j][i] = costs[j];
+	    } else {
+		System.arraycopy(costs, 0, table[i], 0, goals.length);
+	    }
+	}
+    }
+
+}
+
+
+public class ManyToManySearch {
+    ForkJoinPool pool;
+    int chunkSize = 8;         // searches handled directly by one task
+    int blockSize = 256;       // rows computed at a time when writing
+    // Roads leading out of each location, in compressed form ...
+    int[] outStart;
+    int[] outTo;
+    double[] outCost;
+    // Roads leading into each location, in compressed form ...
+    int[] inStart;
+    int[] inFrom;
+    double[] inCost;
+
+    // Constructor with state space specified, using the common fork/join
+    // pool ...
+    public ManyToManySearch(Map stateSpace) {
+	this(stateSpace, ForkJoinPool.commonPool());
+    }
+
+    // Constructor with state space and fork/join pool specified ...
+    public ManyToManySearch(Map stateSpace, ForkJoinPool pool) {
+	this.pool = pool;
+	int size = stateSpace.locations.size();
+	int roadCount = 0;
+	int[] inDegree = new int[size];
+	for (Location loc : stateSpace.locations) {
+	    roadCount += loc.roads.size();
+	    for (Road r : loc.roads)
+		inDegree[r.toLocation.id]++;
+	}
+	outStart = new int[size + 1];
+	outTo = new int[roadCount];
+	outCost = new double[roadCount];
+	inStart = new int[size + 1];
+	inFrom = new int[roadCount];
+	inCost = new double[roadCount];
+	for (int i = 0; i < size; i++)
+	    inStart[i + 1] = inStart[i] + inDegree[i];
+	int[] inNext = Arrays.copyOf(inStart, size);
+	int k = 0;
+	for (Location loc : stateSpace.locations) {
+	    outStart[loc.id] = k;
+	    for (Road r : loc.roads) {
+		outTo[k] = r.toLocation.id;
+		outCost[k] = r.cost;
+		k++;
+		int j = inNext[r.toLocation.id]++;
+		inFrom[j] = loc.id;
+		inCost[j] = r.cost;
+	    }
+	}
+	outStart[size] = k;
+    }
+
+    // compute -- Return a table of shortest path costs, with a row for each
+    // of the given sources and a column for each of the given targets.
+    public double[][] compute(List<Location> sources, List<Location> targets) {
+	int[] sourceIds = idsOf(sources);
+	int[] targetIds = idsOf(targets);
+	double[][] table = new double[sourceIds.length][targetIds.length];
+	if ((sourceIds.length == 0) || (targetIds.length == 0))
+	    return (table);
+	if (targetIds.length < sourceIds.length) {
+	    // Fewer searches are needed if they start at the targets ...
+	    pool.invoke(new MatrixTask(this, targetIds, sourceIds, true, table,
+				       0, targetIds.length));
+	} else {
+	    pool.invoke(new MatrixTask(this, sourceIds, targetIds, false, table,
+				       0, sourceIds.length));
+	}
+	return (table);
+    }
+
+    // write -- Compute the table of shortest path costs between the given
+    // sources and targets, writing it to the given stream in the binary
+    // format described above.  When the searches start at the sources, only
+    // a block of rows is held in memory at any one time.  Otherwise, the
+    // backward search from each target is done only once, rather than once
+    // for every block, and the whole table is held.
+    public void write(List<Location> sources, List<Location> targets,
+		      OutputStream str) throws IOException {
+	DataOutputStream out
+	    = new DataOutputStream(new BufferedOutputStream(str));
+	out.writeInt(sources.size());
+	out.writeInt(targets.size());
+	if (targets.size() < sources.size()) {
+	    for (double[] row : compute(sources, targets))
+		for (double cost : row)
+		    out.writeDouble(cost);
+	} else {
+	    for (int i = 0; i < sources.size(); i += blockSize) {
+		int end = Math.min(sources.size(), i + blockSize);
+		for (double[] row : compute(sources.subList(i, end), targets))
+		    for (double cost : row)
+			out.writeDouble(cost);
+	    }
+	}
+	out.flush();
+    }
+
+    // write -- Compute the table of shortest path costs between the given
+    // sources and targets, writing it to the file with the given pathname.
+    // Return false on error.
+    public boolean write(List<Location> sources, List<Location> targets,
+			 String filename) {
+	try {
+	    FileOutputStream fileOut = new FileOutputStream(filename);
+	    try {
+		write(sources, targets, fileOut);
+	    } finally {
+		fileOut.close();
+	    }
+	    return (true);
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (false);
+	}
+    }
+
+    // search -- Perform a uniform-cost search from the given location,
+    // forward or backward, filling in the given array of path costs, and
+    // stopping once every goal location has been expanded.
+    void search(int origin, boolean backward, boolean[] isGoal,
+		int distinctGoals, double[] dist, LocationHeap fringe) {
+	int[] start = backward ? inStart : outStart;
+	int[] next = backward ? inFrom : outTo;
+	double[] cost = backward ? inCost : outCost;
+	Arrays.fill(dist, Double.POSITIVE_INFINITY);
+	fringe.clear();
+	dist[origin] = 0.0;
+	fringe.insertOrLower(origin, 0.0);
+	int goalsLeft = distinctGoals;
+	while (!(fringe.isEmpty())) {
+	    int u = fringe.removeMin();
+	    if (isGoal[u]) {
+		goalsLeft--;
+		if (goalsLeft == 0)
+		    break;
+	    }
+	    for (int k = start[u]; k < start[u + 1]; k++) {
+		int v = next[k];
+		double g = dist[u] + cost[k];
+		if (g < dist[v]) {
+		    dist[v] = g;
+		    fringe.insertOrLower(v, g);
+		}
+	    }
+	}
+    }
+
+    // idsOf -- Return the identifiers of the given locations.
+    static int[] idsOf(List<Location> locs) {
+	int[] ids = new int[locs.size()];
+	for (int i = 0; i < ids.length; i++)
+	    ids[i] = locs.get(i).id;
+	return (ids);
+    }
+
+}
@@ -27,10 +27,14 @@ public class Map {
     String locationFilename = "locations.dat";
     String roadFilename = "roads.dat";
     List<Location> locations;
+    HashMap<String, Location> locationsByName;
+    LocationGrid grid = null;
+    volatile int modificationCount = 0;   // read by caches on any thread
 
     // Default constructor ...
     public Map() {
 	this.locations = new ArrayList<Location>();
+	this.locationsByName = new HashMap<String, Location>();
     }
 
     // Constructor with filenames specified ...
@@ -75,21 +79,49 @@ public class Map {
 	return (true);
     }
 
-    // findLocation -- Search through the collection of locations on this map
-    // for one with the given textual name.  Return a reference to the
-    // corresponding Location object, or null if no such location is found.
+    // findLocation -- Look up the location on this map with the given
+    // textual name.  Return a reference to the corresponding Location
+    // object, or null if no such location is found.
     public Location findLocation(String name) {
-	for (Location loc : locations) {
-	    if (loc.name.equals(name))
-		return (loc);
-	}
-	return (null);
+	return (locationsByName.get(name));
     }
 
     // recordLocation -- Add the given Location object to the collection of
-    // locations for this map.
+    // locations for this map, giving it the next unused identifier.
     public void recordLocation(Location loc) {
+	loc.id = locations.size();
 	locations.add(loc);
+	locationsByName.put(loc.name, loc);
+	noteModification();
+    }
+
+    // noteModification -- Record that the locations or roads of this map
+    // have changed, so that saved search results can be recognized as out
+    // of date.  Code that changes Road objects directly should call this.
+    // Changes are made by one thread at a time, so the count needs no lock,
+    // but it is volatile, so that other threads see each change.
+    public void noteModification() {
+	modificationCount++;
+    }
+
+    // getModificationCount -- Return the number of changes recorded for this
+    // map so far.
+    public int getModificationCount() {
+	return (modificationCount);
+    }
+
+    // spatialIndex -- Return a spatial index over the locations on this
+    // map, rebuilding it if locations have been recorded since it was built.
+    public LocationGrid spatialIndex() {
+	if ((grid == null) || (grid.locations.size() != locations.size()))
+	    grid = new LocationGrid(locations);
+	return (grid);
+    }
+
+    // nearestLocation -- Return the location on this map closest to the
+    // given coordinates, or null if the map has no locations.
+    public Location nearestLocation(double longitude, double latitude) {
+	return (spatialIndex().nearest(longitude, latitude));
     }
 
     // readLocations -- Attempt to open the location file specified by the
@@ -114,6 +146,8 @@ public class Map {
 		    // Allocate storage for the next location ...
 		    loc = new Location();
 		}
+		// Index the locations by position ...
+		grid = new LocationGrid(locations);
 		return (true);
 	    } else {
 		// The file cannot be read ...
@@ -164,6 +198,7 @@ public class Map {
 		    // Allocate storage for the next road segment ...
 		    r = new Road();
 		}
+		noteModification();
 		return (true);
 	    } else {
 		// The specified road file could not be read ...
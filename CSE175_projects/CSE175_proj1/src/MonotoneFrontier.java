@@ -0,0 +1,155 @@
+//
+// MonotoneFrontier
+//
+// This abstract class provides the common bookkeeping for priority queues
+// of Waypoint objects that rely on the sorting statistic of removed nodes
+// never decreasing over time.  This is the case for the partial path cost
+// in uniform-cost search, and for the sum of the partial path cost and the
+// heuristic value in A* search with a consistent heuristic.  Such queues
+// can avoid the comparison-based sorting done by a SortedFrontier.  As
+// subclasses of SortedFrontier, these queues may be used in its place.
+// The subclasses need only provide a way to insert a node with a given key
+// and to extract a node with the smallest key.  This class keeps an index
+// of the contained nodes by location name, so that the "contains" and
+// "find" methods do not need a linear search, and it implements the
+// "remove" method by marking the queue entry of a removed node, so that
+// the entry is skipped when it comes to the top.  Each addition of a node
+// makes a new entry, so a node that is removed and then added again is
+// not confused with its stale entry.  A node added with a key smaller than
+// that of the last node removed is treated as if its key were equal to
+// that of the last node removed.  Heuristic values alone are not monotone,
+// so these queues cannot be sorted by them.
+//
+
+
+import java.util.*;
+
+
+public abstract class MonotoneFrontier extends SortedFrontier {
+
+    // Entry -- One addition of a Waypoint to the frontier.
+    static class Entry {
+	Waypoint wp;
+	boolean removed = false;
+
+	// Constructor with Waypoint specified ...
+	public Entry(Waypoint wp) {
+	    this.wp = wp;
+	}
+    }
+
+    int liveCount = 0;
+    java.util.Map<String, List<Entry>> members;
+
+    // Default constructor ...
+    public MonotoneFrontier() {
+	this(SortBy.g);
+    }
+
+    // Constructor with sorting strategy specified.  Sorting by heuristic
+    // value alone is rejected, since it is not monotone ...
+    public MonotoneFrontier(SortBy strategy) {
+	super(strategy);
+	if (strategy == SortBy.h)
+	    throw new IllegalArgumentException("heuristic values alone are "
+					       + "not monotone");
+	this.members = new HashMap<String, List<Entry>>();
+    }
+
+    // push -- Insert the given entry with the given key.
+    abstract void push(Entry e, double key);
+
+    // pop -- Extract and return an entry with the smallest key, whether or
+    // not it has been marked as removed.  Return null if there are no
+    // entries left at all.
+    abstract Entry pop();
+
+    // statistic -- Return the value used to sort the given Waypoint.
+    double statistic(Waypoint wp) {
+	if (sortingStrategy == SortBy.f)
+	    return (wp.partialPathCost + wp.heuristicValue);
+	return (wp.partialPathCost);
+    }
+
+    // isEmpty -- Return true if and only if there are currently no nodes in
+    // the frontier.
+    public boolean isEmpty() {
+	return (liveCount == 0);
+    }
+
+    // removeTop -- Return the Waypoint object at the top of the frontier
+    // list.  Also, remove this node from the frontier.  Return null if the
+    // frontier is empty.
+    public Waypoint removeTop() {
+	while (liveCount > 0) {
+	    Entry top = pop();
+	    if (top == null)
+		break;
+	    if (top.removed)
+		// This one was removed earlier, so skip it ...
+		continue;
+	    forget(top.wp);
+	    liveCount--;
+	    return (top.wp);
+	}
+	return (null);
+    }
+
+    // addSorted -- Add the given Waypoint object to the frontier in the
+    // appropriate position, given its sorting statistics.
+    public void addSorted(Waypoint wp) {
+	Entry e = new Entry(wp);
+	push(e, statistic(wp));
+	List<Entry> sameLoc = members.get(wp.loc.name);
+	if (sameLoc == null) {
+	    sameLoc = new ArrayList<Entry>(1);
+	    members.put(wp.loc.name, sameLoc);
+	}
+	sameLoc.add(e);
+	liveCount++;
+    }
+
+    // remove -- Remove a specified Waypoint object from the frontier.
+    public void remove(Waypoint wp) {
+	Entry e = forget(wp);
+	if (e != null) {
+	    e.removed = true;
+	    liveCount--;
+	}
+    }
+
+    // contains -- Return true if and only if the frontier contains a
+    // Waypoint with the given Location name.
+    public boolean contains(String name) {
+	return (members.containsKey(name));
+    }
+
+    // find -- Return a Waypoint in the frontier with the given location
+    // name, or null if there is no such Waypoint.
+    public Waypoint find(String name) {
+	List<Entry> sameLoc = members.get(name);
+	if (sameLoc == null)
+	    return (null);
+	return (sameLoc.get(0).wp);
+    }
+
+    // forget -- Remove the live entry for the given Waypoint from the
+    // index of contained nodes, and return it.  Return null if the
+    // Waypoint is not in the index.
+    Entry forget(Waypoint wp) {
+	List<Entry> sameLoc = members.get(wp.loc.name);
+	if (sameLoc == null)
+	    return (null);
+	for (int i = 0; i < sameLoc.size(); i++) {
+	    Entry e = sameLoc.get(i);
+	    if (e.wp == wp) {
+		sameLoc.remove(i);
+		if (sameLoc.isEmpty())
+		    members.remove(wp.loc.name);
+		return (e);
+	    }
+	}
+	return (null);
+    }
+
+}
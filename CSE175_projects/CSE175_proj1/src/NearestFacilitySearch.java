@@ -0,0 +1,189 @@
+//
+// NearestFacilitySearch
+//
+// This class finds the closest, by path cost, of a set of goal locations
+// (e.g., every coffee shop on the map), or the k closest, using a single A*
+// search rather than one search for each candidate.  The goals may be given
+// as a collection of locations or as a test on location names.  The
+// heuristic value of a location is the smallest value that the given
+// heuristic gives it for any of the goals, which is admissible (and
+// consistent) whenever the given heuristic is.  Since the heuristic value
+// of every goal is zero, goals are removed from the frontier in order of
+// increasing path cost, so the search stops as soon as enough goals have
+// been removed.  When the given heuristic is a GeometricHeuristic, the
+// smallest value is found using a LocationGrid over the goals, rather than
+// by trying every goal.  The search tree is kept in a NodePool, as in the
+// PooledBestFirstSearch class.  The search is depth-limited, in the same
+// way as the other search classes, and objects of this class maintain the
+// total number of nodes expanded during the last call to "search".
+//
+
+
+import java.util.*;
+import java.util.function.Predicate;
+
+
+// MinGoalHeuristic -- A heuristic function giving the smallest value that a
+// base heuristic gives for any of a list of goals.
+class MinGoalHeuristic extends Heuristic {
+    Heuristic base;
+    List<Location> goals;
+    LocationGrid grid;    // for a geometric base heuristic, or null
+
+    // Constructor with base heuristic and goals specified ...
+    public MinGoalHeuristic(Heuristic base, List<Location> goals) {
+	this.base = base;
+	this.goals = goals;
+	if (base instanceof GeometricHeuristic)
+	    this.grid = new LocationGrid(goals);
+    }
+
+    // heuristicFunction -- Return the appropriate heuristic values for the
+    // given search tree node.  Note that the given Waypoint should not be
+    // modified within the body of this function.
+    public double heuristicFunction(Waypoint wp) {
+	if (goals.isEmpty())
+	    return (0.0);
+	if (grid != null) {
+	    Location closest = grid.nearest(wp.loc.longitude, wp.loc.latitude);
+	    return (((GeometricHeuristic) base).scale
+		    * GeometricHeuristic.distance(wp.loc, closest));
+	}
+	double hVal = Double.POSITIVE_INFINITY;
+	for (Location goal : goals) {
+	    base.setDestination(goal);
+	    hVal = Math.min(hVal, base.heuristicFunction(wp));
+	    if (hVal <= 0.0)
+		break;
+	}
+	return (hVal);
+    }
+
+}
+
+
+public class NearestFacilitySearch {
+    Map stateSpace;
+    Heuristic heuristic;
+    public String startName;
+    public List<Location> goals;
+    int depthLimit = 10000;
+    public int expansionCount = 0;
+    // Search storage, valid only during a call to "search" ...
+    NodePool nodes;
+    LocationHeap fringe;
+    int[] nodeAt;
+    double[] hValue;
+    boolean[] closed;
+    boolean[] isGoal;
+
+    // Default constructor ...
+    public NearestFacilitySearch() {
+	this.stateSpace = null;
+	this.heuristic = new Heuristic();
+	this.startName = "";
+	this.goals = new ArrayList<Location>();
+	this.depthLimit = 10000;
+	this.expansionCount = 0;
+    }
+
+    // Constructor with state space, heuristic, initial location, goal
+    // locations, and depth limit specified ...
+    public NearestFacilitySearch(Map stateSpace, Heuristic heuristic,
+				 String startName,
+				 Collection<Location> goals, int depthLimit) {
+	this();
+	this.stateSpace = stateSpace;
+	this.heuristic = heuristic;
+	this.startName = startName;
+	this.goals = new ArrayList<Location>(goals);
+	this.depthLimit = depthLimit;
+    }
+
+    // Constructor with state space, heuristic, initial location, a test
+    // selecting the goal locations by name, and depth limit specified ...
+    public NearestFacilitySearch(Map stateSpace, Heuristic heuristic,
+				 String startName, Predicate<String> isGoalName,
+				 int depthLimit) {
+	this(stateSpace, heuristic, startName, new ArrayList<Location>(),
+	     depthLimit);
+	for (Location loc : stateSpace.locations)
+	    if (isGoalName.test(loc.name))
+		this.goals.add(loc);
+    }
+
+    // search -- Return the goal node at the end of a shortest path from the
+    // initial location to the closest goal, or null on failure.
+    public Waypoint search() {
+	List<Waypoint> closest = search(1);
+	return (closest.isEmpty() ? null : closest.get(0));
+    }
+
+    // search -- Return the goal nodes at the ends of shortest paths from
+    // the initial location to the (at most) k closest goals, in order of
+    // increasing path cost.  Return an empty list on failure.
+    public List<Waypoint> search(int k) {
+	List<Waypoint> found = new ArrayList<Waypoint>();
+	Location initialLoc = stateSpace.findLocation(startName);
+	expansionCount = 0;
+	if ((initialLoc == null) || goals.isEmpty() || (k <= 0))
+	    return (found);
+	int size = stateSpace.locations.size();
+	nodes = new NodePool(size);
+	fringe = new LocationHeap(size);
+	nodeAt = new int[size];
+	hValue = new double[size];
+	closed = new boolean[size];
+	isGoal = new boolean[size];
+	Arrays.fill(nodeAt, -1);
+	Arrays.fill(hValue, Double.NaN);
+	for (Location goal : goals)
+	    isGoal[goal.id] = true;
+	Heuristic h = new MinGoalHeuristic(heuristic, goals);
+	Waypoint probe = new Waypoint();
+	// Make the initial node ...
+	int root = nodes.add(initialLoc.id, -1, 0.0,
+			     heuristicOf(h, probe, initialLoc));
+	nodeAt[initialLoc.id] = root;
+	fringe.insertOrLower(initialLoc.id, nodes.heuristicValue[root]);
+	while (!(fringe.isEmpty())) {
+	    int u = fringe.removeMin();
+	    int node = nodeAt[u];
+	    closed[u] = true;
+	    if (isGoal[u]) {
+		found.add(nodes.toWaypoint(node, stateSpace));
+		if (found.size() == k)
+		    break;
+	    }
+	    if (nodes.depth[node] >= depthLimit)
+		continue;
+	    expansionCount++;
+	    double g = nodes.partialPathCost[node];
+	    for (Road r : stateSpace.locations.get(u).roads) {
+		int v = r.toLocation.id;
+		if (closed[v])
+		    continue;
+		double cost = g + r.cost;
+		if ((nodeAt[v] >= 0) &&
+		    (nodes.partialPathCost[nodeAt[v]] <= cost))
+		    continue;
+		double hv = heuristicOf(h, probe, r.toLocation);
+		int child = nodes.add(v, node, cost, hv);
+		nodeAt[v] = child;
+		fringe.insertOrLower(v, cost + hv);
+	    }
+	}
+	return (found);
+    }
+
+    // heuristicOf -- Return the heuristic value of the given location,
+    // computing it the first time that it is needed.
+    double heuristicOf(Heuristic h, Waypoint probe, Location loc) {
+	if (Double.isNaN(hValue[loc.id])) {
+	    probe.loc = loc;
+	    hValue[loc.id] = h.heuristicFunction(probe);
+	}
+	return (hValue[loc.id]);
+    }
+
+}
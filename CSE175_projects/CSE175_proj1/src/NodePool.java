@@ -0,0 +1,89 @@
+//
+// NodePool
+//
+// This class stores the nodes of a search tree as parallel arrays, rather
+// than as individual Waypoint objects.  Each node is identified by its
+// position in the arrays, and it records the identifier of its location,
+// the position of its parent node (or -1 for the root), its depth, its
+// partial path cost, and its heuristic value.  Adding a node allocates
+// nothing unless the arrays must grow, and a pool may be cleared and reused
+// for many searches.  Waypoint objects are only made for the nodes on the
+// path that is finally returned.
+//
+
+
+import java.util.*;
+
+
+public class NodePool {
+    int[] location;
+    int[] parent;
+    int[] depth;
+    double[] partialPathCost;
+    double[] heuristicValue;
+    int size = 0;
+
+    // Constructor with the initial number of nodes specified ...
+    public NodePool(int capacity) {
+	capacity = Math.max(capacity, 16);
+	this.location = new int[capacity];
+	this.parent = new int[capacity];
+	this.depth = new int[capacity];
+	this.partialPathCost = new double[capacity];
+	this.heuristicValue = new double[capacity];
+    }
+
+    // size -- Return the number of nodes in the pool.
+    public int size() {
+	return (size);
+    }
+
+    // clear -- Discard every node in the pool, keeping the storage.
+    public void clear() {
+	size = 0;
+    }
+
+    // add -- Record a new node for the given location, as a child of the
+    // given parent node (or -1 for a root), and return its position.  The
+    // depth is taken from the parent.
+    public int add(int loc, int parentNode, double cost, double h) {
+	if (size == location.length)
+	    grow();
+	location[size] = loc;
+	parent[size] = parentNode;
+	depth[size] = (parentNode < 0) ? 0 : depth[parentNode] + 1;
+	partialPathCost[size] = cost;
+	heuristicValue[size] = h;
+	return (size++);
+    }
+
+    // grow -- Double the capacity of the pool.
+    void grow() {
+	int capacity = 2 * location.length;
+	location = Arrays.copyOf(location, capacity);
+	parent = Arrays.copyOf(parent, capacity);
+	depth = Arrays.copyOf(depth, capacity);
+	partialPathCost = Arrays.copyOf(partialPathCost, capacity);
+	heuristicValue = Arrays.copyOf(heuristicValue, capacity);
+    }
+
+    // toWaypoint -- Return a chain of Waypoint objects for the path from the
+    // root of the search tree to the given node, with the last Waypoint on
+    // the path returned.
+    public Waypoint toWaypoint(int node, Map stateSpace) {
+	if (node < 0)
+	    return (null);
+	LinkedList<Integer> path = new LinkedList<Integer>();
+	for (int n = node; n >= 0; n = parent[n])
+	    path.addFirst(n);
+	Waypoint wp = null;
+	for (int n : path) {
+	    wp = new Waypoint(stateSpace.locations.get(location[n]), wp);
+	    wp.depth = depth[n];
+	    wp.partialPathCost = partialPathCost[n];
+	    wp.heuristicValue = heuristicValue[n];
+	}
+	return (wp);
+    }
+
+}
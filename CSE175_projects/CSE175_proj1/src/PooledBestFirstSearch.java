@@ -0,0 +1,158 @@
+//
+// PooledBestFirstSearch
+//
+// This class implements best-first search over the locations in a map,
+// with the frontier sorted by partial path cost (uniform-cost search), by
+// heuristic value (greedy best-first search), or by their sum (A* search),
+// just as a SortedFrontier would be.  Rather than creating a Waypoint, with
+// its own list of options, for every node generated, the search tree is
+// kept in a NodePool, and the frontier is a LocationHeap holding at most
+// one node for each location.  The children of a node are generated
+// directly from the roads leading out of its location, and a child is only
+// recorded if it reaches its location more cheaply than any node found so
+// far.  The heuristic value of a location is computed once, when a node for
+// it is first recorded, by passing a single reused Waypoint to the
+// heuristic function.  Waypoint objects are only made for the path that is
+// returned.  Repeated state checking is always used, so A* search returns
+// an optimal path when the heuristic is consistent.  The search is
+// depth-limited, in the same way as the other search classes, and objects
+// of this class maintain the total number of nodes expanded during the last
+// call to "search", and they can record each expansion in an ExpansionTrace.
+//
+
+
+import java.util.*;
+
+
+public class PooledBestFirstSearch {
+    Map stateSpace;
+    Heuristic heuristic;
+    SortBy sortingStrategy;
+    public String startName;
+    public String finishName;
+    int depthLimit = 10000;
+    public int expansionCount = 0;
+    public ExpansionTrace trace = null;   // records expansions, if given
+    // Search storage, reused from one call to "search" to the next ...
+    NodePool nodes;
+    LocationHeap fringe;
+    int[] nodeAt;         // best node recorded for each location, or -1
+    double[] hValue;      // NaN until computed
+    boolean[] closed;
+    Waypoint probe;
+
+    // Default constructor ...
+    public PooledBestFirstSearch() {
+	this.stateSpace = null;
+	this.heuristic = new Heuristic();
+	this.sortingStrategy = SortBy.f;
+	this.startName = "";
+	this.finishName = "";
+	this.depthLimit = 10000;
+	this.expansionCount = 0;
+    }
+
+    // Constructor with state space, heuristic, sorting strategy, and search
+    // parameters specified ...
+    public PooledBestFirstSearch(Map stateSpace, Heuristic heuristic,
+				 SortBy sortingStrategy, String startName,
+				 String finishName, int depthLimit) {
+	this();
+	this.stateSpace = stateSpace;
+	this.heuristic = heuristic;
+	this.sortingStrategy = sortingStrategy;
+	this.startName = startName;
+	this.finishName = finishName;
+	this.depthLimit = depthLimit;
+    }
+
+    // search -- Perform best-first search from the initial location to the
+    // destination location, returning the goal node, or null on failure.
+    public Waypoint search() {
+	// Find initial and final locations ...
+	Location initialLoc = stateSpace.findLocation(startName);
+	Location finalLoc = stateSpace.findLocation(finishName);
+	if ((initialLoc == null) || (finalLoc == null))
+	    // Invalid location name, so return failure ...
+	    return (null);
+	heuristic.setDestination(finalLoc);
+	prepare();
+	expansionCount = 0;
+	// Make the initial node ...
+	int root = nodes.add(initialLoc.id, -1, 0.0, heuristicOf(initialLoc));
+	nodeAt[initialLoc.id] = root;
+	fringe.insertOrLower(initialLoc.id, key(root));
+	while (!(fringe.isEmpty())) {
+	    int u = fringe.removeMin();
+	    int node = nodeAt[u];
+	    if (u == finalLoc.id)
+		return (nodes.toWaypoint(node, stateSpace));
+	    closed[u] = true;
+	    if (nodes.depth[node] >= depthLimit)
+		continue;
+	    expansionCount++;
+	    double g = nodes.partialPathCost[node];
+	    if (trace != null)
+		trace.record(u, g, nodes.heuristicValue[node],
+			     nodes.depth[node]);
+	    for (Road r : stateSpace.locations.get(u).roads) {
+		int v = r.toLocation.id;
+		if (closed[v])
+		    continue;
+		double cost = g + r.cost;
+		if ((nodeAt[v] >= 0) && (nodes.partialPathCost[nodeAt[v]] <= cost))
+		    continue;
+		// This is the best way found to reach the location, so record
+		// a node for it ...
+		int child = nodes.add(v, node, cost, heuristicOf(r.toLocation));
+		nodeAt[v] = child;
+		// The heuristic value depends only on the location, so a
+		// cheaper node never has a higher key ...
+		fringe.insertOrLower(v, key(child));
+	    }
+	}
+	return (null);
+    }
+
+    // prepare -- Allocate or reset the search storage for the current map.
+    void prepare() {
+	int size = stateSpace.locations.size();
+	if ((nodeAt == null) || (nodeAt.length != size)) {
+	    nodes = new NodePool(size);
+	    fringe = new LocationHeap(size);
+	    nodeAt = new int[size];
+	    hValue = new double[size];
+	    closed = new boolean[size];
+	    probe = new Waypoint();
+	}
+	nodes.clear();
+	fringe.clear();
+	Arrays.fill(nodeAt, -1);
+	Arrays.fill(hValue, Double.NaN);
+	Arrays.fill(closed, false);
+    }
+
+    // heuristicOf -- Return the heuristic value of the given location,
+    // computing it the first time that it is needed.
+    double heuristicOf(Location loc) {
+	if (Double.isNaN(hValue[loc.id])) {
+	    probe.loc = loc;
+	    hValue[loc.id] = heuristic.heuristicFunction(probe);
+	}
+	return (hValue[loc.id]);
+    }
+
+    // key -- Return the value by which the given node is sorted on the
+    // frontier.
+    double key(int node) {
+	switch (sortingStrategy) {
+	case g:
+	    return (nodes.partialPathCost[node]);
+	case h:
+	    return (nodes.heuristicValue[node]);
+	default:
+	    return (nodes.partialPathCost[node] + nodes.heuristicValue[node]);
+	}
+    }
+
+}
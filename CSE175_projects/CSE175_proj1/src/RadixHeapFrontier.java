@@ -0,0 +1,104 @@
+//
+// RadixHeapFrontier
+//
+// This class implements a monotone priority queue of Waypoint objects as a
+// radix heap.  Nodes are kept in 65 buckets, according to the position of
+// the highest bit in which their keys differ from the key of the last node
+// removed.  Removing a node only requires emptying the lowest nonempty
+// bucket into lower buckets, relative to the smallest key in that bucket,
+// and each node can move down at most 64 times, so no comparisons between
+// nodes are ever needed.  Keys are the sorting statistics of the nodes, as
+// given by the sorting strategy.  Since these statistics are never negative,
+// the bits of their double precision floating point representations sort in
+// the same order as the values themselves, so no rounding is needed.  This
+// class is intended to be used in place of a SortedFrontier in uniform-cost
+// search, or in A* search with a consistent heuristic.
+//
+
+
+import java.util.*;
+
+
+// RadixBucket -- A growable array of frontier entries and their keys.
+class RadixBucket {
+    MonotoneFrontier.Entry[] nodes = new MonotoneFrontier.Entry[4];
+    long[] keys = new long[4];
+    int size = 0;
+
+    // add -- Add the given entry, with the given key, to the bucket.
+    void add(MonotoneFrontier.Entry e, long key) {
+	if (size == nodes.length) {
+	    nodes = Arrays.copyOf(nodes, size * 2);
+	    keys = Arrays.copyOf(keys, size * 2);
+	}
+	nodes[size] = e;
+	keys[size] = key;
+	size++;
+    }
+
+}
+
+
+public class RadixHeapFrontier extends MonotoneFrontier {
+    RadixBucket[] buckets;
+    long last = 0;     // the key of the last node removed
+    int entries = 0;   // including nodes marked as removed
+
+    // Default constructor ...
+    public RadixHeapFrontier() {
+	this(SortBy.g);
+    }
+
+    // Constructor with sorting strategy specified ...
+    public RadixHeapFrontier(SortBy strategy) {
+	super(strategy);
+	this.buckets = new RadixBucket[65];
+	for (int i = 0; i < buckets.length; i++)
+	    buckets[i] = new RadixBucket();
+    }
+
+    // bucketIndex -- Return the index of the bucket for the given key.
+    int bucketIndex(long key) {
+	if (key == last)
+	    return (0);
+	return (64 - Long.numberOfLeadingZeros(key ^ last));
+    }
+
+    // push -- Insert the given entry with the given key.
+    void push(Entry e, double value) {
+	long key = Double.doubleToLongBits(Math.max(0.0, value));
+	if (key < last)
+	    key = last;
+	buckets[bucketIndex(key)].add(e, key);
+	entries++;
+    }
+
+    // pop -- Extract and return an entry with the smallest key.
+    Entry pop() {
+	if (entries == 0)
+	    return (null);
+	if (buckets[0].size == 0) {
+	    // Find the lowest nonempty bucket, and redistribute its contents
+	    // relative to its smallest key ...
+	    int i = 1;
+	    while (buckets[i].size == 0)
+		i++;
+	    RadixBucket b = buckets[i];
+	    long smallest = b.keys[0];
+	    for (int j = 1; j < b.size; j++)
+		if (b.keys[j] < smallest)
+		    smallest = b.keys[j];
+	    last = smallest;
+	    buckets[i] = new RadixBucket();
+	    for (int j = 0; j < b.size; j++)
+		buckets[bucketIndex(b.keys[j])].add(b.nodes[j], b.keys[j]);
+	}
+	RadixBucket b = buckets[0];
+	b.size--;
+	Entry top = b.nodes[b.size];
+	b.nodes[b.size] = null;
+	entries--;
+	return (top);
+    }
+
+}
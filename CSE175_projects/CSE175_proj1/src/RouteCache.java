@@ -0,0 +1,193 @@
+//
+// RouteCache
+//
+// This class answers shortest-path queries from a cache of previously found
+// routes, keyed by initial and destination location.  Since every part of
+// a shortest path is itself a shortest path, a route from one location to
+// another also answers the query from any location along it to the same
+// destination.  When a route is stored, its suffixes can optionally be
+// stored as well, all sharing a single compact copy of the route.  The
+// cache holds at most a given number of entries, discarding the least
+// recently used entry when it is full.  Every entry is discarded when the
+// map reports that it has changed.  Queries that miss the cache are
+// answered by an A* search, using a PooledBestFirstSearch kept for each
+// thread, so that the search storage is reused from one miss to the next
+// and several threads can search at once.  Heuristic objects record their
+// destination, so each thread's search gets its own heuristic, obtained
+// from a Supplier.  The heuristics must be admissible and consistent, so
+// that the routes stored are optimal.  The cache may be shared by several
+// threads, and objects of this class count the number of queries that were
+// answered from the cache and the number that required a search.
+//
+
+
+import java.util.*;
+import java.util.function.Supplier;
+
+
+// CachedRoute -- The part of a route starting at a given position, with the
+// locations on the whole route recorded by identifier, along with the partial
+// path cost of the route at each location.  The arrays may be shared by the
+// entries for several suffixes of the same route.
+class CachedRoute {
+    int[] locs;
+    double[] costs;
+    int first;
+
+    // Constructor with the route arrays and starting position specified ...
+    public CachedRoute(int[] locs, double[] costs, int first) {
+	this.locs = locs;
+	this.costs = costs;
+	this.first = first;
+    }
+
+    // toWaypoint -- Return the goal node at the end of this route.
+    public Waypoint toWaypoint(Map stateSpace) {
+	Waypoint node = null;
+	for (int i = first; i < locs.length; i++) {
+	    node = new Waypoint(stateSpace.locations.get(locs[i]), node);
+	    node.depth = i - first;
+	    node.partialPathCost = costs[i] - costs[first];
+	}
+	return (node);
+    }
+
+}
+
+
+public class RouteCache {
+    Map stateSpace;
+    Supplier<? extends Heuristic> heuristics;
+    ThreadLocal<PooledBestFirstSearch> engines;
+    int depthLimit = 10000;
+    public int maxEntries = 100000;
+    public boolean storeSuffixes = true;
+    public int hitCount = 0;
+    public int missCount = 0;
+    int modificationCount;
+    // Each entry is keyed by a pair of location identifiers ...
+    LinkedHashMap<Long, CachedRoute> routes;
+
+    // Constructor with state space, source of heuristics, and maximum number
+    // of entries specified ...
+    public RouteCache(Map stateSpace, Supplier<? extends Heuristic> source,
+		      int maxEntries) {
+	this.stateSpace = stateSpace;
+	this.heuristics = source;
+	this.maxEntries = maxEntries;
+	this.engines = new ThreadLocal<PooledBestFirstSearch>() {
+		protected PooledBestFirstSearch initialValue() {
+		    return (new PooledBestFirstSearch(stateSpace,
+						      heuristics.get(),
+						      SortBy.f, "", "",
+						      depthLimit));
+		}
+	    };
+	this.modificationCount = stateSpace.getModificationCount();
+	// An access-ordered map keeps the least recently used entry first ...
+	this.routes = new LinkedHashMap<Long, CachedRoute>(16, 0.75f, true);
+    }
+
+    // search -- Return the goal node at the end of a shortest path from the
+    // named initial location to the named destination location, or null if
+    // there is no such path.
+    public Waypoint search(String startName, String finishName) {
+	Location initialLoc = stateSpace.findLocation(startName);
+	Location finalLoc = stateSpace.findLocation(finishName);
+	if ((initialLoc == null) || (finalLoc == null))
+	    // Invalid location name, so return failure ...
+	    return (null);
+	Waypoint cached = lookup(initialLoc, finalLoc);
+	if (cached != null)
+	    return (cached);
+	// Searching is done outside of the cache lock, with this thread's
+	// own engine ...
+	int count = stateSpace.getModificationCount();
+	PooledBestFirstSearch engine = engines.get();
+	engine.startName = startName;
+	engine.finishName = finishName;
+	Waypoint solution = engine.search();
+	if ((solution != null) && (count == stateSpace.getModificationCount()))
+	    // The map did not change during the search ...
+	    store(solution);
+	return (solution);
+    }
+
+    // lookup -- Return the goal node at the end of the cached route from
+    // the given initial location to the given destination, or null if there
+    // is no such route in the cache.
+    public synchronized Waypoint lookup(Location initialLoc,
+					Location finalLoc) {
+	checkMap();
+	Long key = key(initialLoc.id, finalLoc.id);
+	CachedRoute route = routes.get(key);
+	if (route == null) {
+	    missCount++;
+	    return (null);
+	}
+	hitCount++;
+	return (route.toWaypoint(stateSpace));
+    }
+
+    // store -- Add the route ending at the given goal node to the cache,
+    // along with its suffixes, if requested.  The route must be a shortest
+    // path.
+    public synchronized void store(Waypoint goal) {
+	checkMap();
+	int n = 0;
+	for (Waypoint wp = goal; wp != null; wp = wp.previous)
+	    n++;
+	int[] locs = new int[n];
+	double[] costs = new double[n];
+	for (Waypoint wp = goal; wp != null; wp = wp.previous) {
+	    n--;
+	    locs[n] = wp.loc.id;
+	    costs[n] = wp.partialPathCost;
+	}
+	int last = locs.length - 1;
+	// Store the shortest suffixes first, so that the whole route is the
+	// most recently used entry ...
+	int first = storeSuffixes ? Math.max(last - 1, 0) : 0;
+	for (int i = first; i >= 0; i--)
+	    put(key(locs[i], locs[last]), new CachedRoute(locs, costs, i));
+    }
+
+    // put -- Record a single entry, evicting the least recently used entry
+    // if the cache is full.
+    void put(Long key, CachedRoute route) {
+	routes.put(key, route);
+	Iterator<Long> it = routes.keySet().iterator();
+	while ((routes.size() > maxEntries) && it.hasNext()) {
+	    if (it.next().equals(key))
+		continue;
+	    it.remove();
+	}
+    }
+
+    // checkMap -- Discard every entry if the map has changed since the
+    // entries were stored.
+    void checkMap() {
+	int count = stateSpace.getModificationCount();
+	if (count != modificationCount) {
+	    clear();
+	    modificationCount = count;
+	}
+    }
+
+    // key -- Return the cache key for the given pair of location
+    // identifiers.
+    static Long key(int from, int to) {
+	return (Long.valueOf((((long) from) << 32) | (to & 0xffffffffL)));
+    }
+
+    // size -- Return the number of entries in the cache.
+    public synchronized int size() {
+	return (routes.size());
+    }
+
+    // clear -- Discard every entry in the cache.
+    public synchronized void clear() {
+	routes.clear();
+    }
+
+}
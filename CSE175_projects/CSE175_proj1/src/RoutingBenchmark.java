@@ -0,0 +1,295 @@
+//
+// RoutingBenchmark
+//
+// This class times the routing hot path, so that changes to the search code
+// can be checked for performance regressions.  Uniform-cost, greedy, and
+// A* search, built on SortedFrontier in the usual textbook way, are timed
+// with and without repeated state checking on generated grid maps of
+// increasing size.  Uniform-cost and A* search are also timed with each
+// kind of frontier that BestFirstSearch can select.  The basic
+// SortedFrontier operations ("addSorted", "removeTop", and "contains") and
+// WaypointComparator's "compare" are also timed on their own.  Each
+// benchmark is run for a number of warm-up rounds, which are not timed, so
+// that the virtual machine has compiled the code, and then for a number of
+// measured rounds, and the mean and best times per operation are reported.
+// Results are folded into a "sink" variable so that the work cannot be
+// optimized away.  Without repeated state checking, searches are cut off
+// after a fixed number of expansions, since the search tree on a grid grows
+// exponentially.  The grid widths may be given on the command line.
+//
+
+
+import java.io.*;
+import java.util.*;
+
+
+public class RoutingBenchmark {
+    public int warmupRounds = 5;
+    public int measuredRounds = 10;
+    public int expansionLimit = 20000;   // for searches without checking
+    public static volatile double sink = 0.0;
+    PrintWriter out;
+
+    // Constructor with output stream specified ...
+    public RoutingBenchmark(OutputStream str) {
+	this.out = new PrintWriter(str, true);
+    }
+
+    // generateMap -- Return a square grid map of the given width, with roads
+    // in both directions between neighboring locations.  Each road costs
+    // between one and one and a half times its length.
+    public static Map generateMap(int width, long seed) {
+	Random rnd = new Random(seed);
+	Map stateSpace = new Map();
+	for (int y = 0; y < width; y++)
+	    for (int x = 0; x < width; x++)
+		stateSpace.recordLocation(new Location("loc-" + x + "-" + y,
+						       x, y));
+	for (int y = 0; y < width; y++) {
+	    for (int x = 0; x < width; x++) {
+		int i = (y * width) + x;
+		Location here = stateSpace.locations.get(i);
+		if (x + 1 < width)
+		    connect(here, stateSpace.locations.get(i + 1),
+			    1.0 + (0.5 * rnd.nextDouble()));
+		if (y + 1 < width)
+		    connect(here, stateSpace.locations.get(i + width),
+			    1.0 + (0.5 * rnd.nextDouble()));
+	    }
+	}
+	return (stateSpace);
+    }
+
+    // connect -- Record roads in both directions between the given
+    // locations, with the given cost.
+    static void connect(Location loc1, Location loc2, double cost) {
+	Location[][] ends = { { loc1, loc2 }, { loc2, loc1 } };
+	for (Location[] end : ends) {
+	    Road r = new Road();
+	    r.name = "street";
+	    r.fromLocation = end[0];
+	    r.toLocation = end[1];
+	    r.fromLocationName = end[0].name;
+	    r.toLocationName = end[1].name;
+	    r.cost = cost;
+	    end[0].recordRoad(r);
+	}
+    }
+
+    // search -- Perform a best-first search over a SortedFrontier, sorted by
+    // the given statistic, from the initial location to the destination,
+    // with or without repeated state checking.  Return the goal node, or
+    // null on failure.  The number of expansions is added to the sink.
+    public Waypoint search(Map stateSpace, Heuristic heuristic, SortBy sortBy,
+			   String startName, String finishName,
+			   boolean stateChecking) {
+	Location finalLoc = stateSpace.findLocation(finishName);
+	heuristic.setDestination(finalLoc);
+	Waypoint node = new Waypoint(stateSpace.findLocation(startName));
+	node.heuristicValue = heuristic.heuristicFunction(node);
+	SortedFrontier fringe = new SortedFrontier(sortBy);
+	Set<String> closed = new HashSet<String>();
+	fringe.addSorted(node);
+	int expansions = 0;
+	while (!(fringe.isEmpty())) {
+	    node = fringe.removeTop();
+	    if (node.isFinalDestination(finishName)) {
+		sink += expansions;
+		return (node);
+	    }
+	    if (!stateChecking && (expansions >= expansionLimit))
+		break;
+	    expansions++;
+	    node.expand(heuristic);
+	    if (!stateChecking) {
+		fringe.addSorted(node.options);
+		continue;
+	    }
+	    closed.add(node.loc.name);
+	    for (Waypoint child : node.options) {
+		if (closed.contains(child.loc.name))
+		    continue;
+		Waypoint old = fringe.find(child.loc);
+		if (old == null) {
+		    fringe.addSorted(child);
+		} else if (BestFirstSearch.better(child, old, sortBy)) {
+		    fringe.remove(old);
+		    fringe.addSorted(child);
+		}
+	    }
+	}
+	sink += expansions;
+	return (null);
+    }
+
+    // measure -- Run the given benchmark, which performs the given number of
+    // operations each time that it is run, and report the time per
+    // operation.
+    public void measure(String name, int operations, Runnable body) {
+	measure(name, operations, null, body);
+    }
+
+    // measure -- Run the given benchmark, as above, running the given setup,
+    // if it is not null, before each run of the benchmark.  The setup is not
+    // timed.
+    public void measure(String name, int operations, Runnable setup,
+			Runnable body) {
+	for (int i = 0; i < warmupRounds; i++) {
+	    if (setup != null)
+		setup.run();
+	    body.run();
+	}
+	long total = 0;
+	long best = Long.MAX_VALUE;
+	for (int i = 0; i < measuredRounds; i++) {
+	    if (setup != null)
+		setup.run();
+	    long start = System.nanoTime();
+	    body.run();
+	    long elapsed = System.nanoTime() - start;
+	    total += elapsed;
+	    best = Math.min(best, elapsed);
+	}
+	double mean = (double) total / measuredRounds / operations;
+	out.printf("%-40s %14.1f %14.1f\n", name, mean,
+		   (double) best / operations);
+    }
+
+    // runSearches -- Time each kind of search on a grid of the given width,
+    // searching between opposite corners.
+    public void runSearches(int width) {
+	final Map stateSpace = generateMap(width, width);
+	final Heuristic heuristic = new GeometricHeuristic(1.0);
+	final String startName = stateSpace.locations.get(0).name;
+	final String finishName
+	    = stateSpace.locations.get(stateSpace.locations.size() - 1).name;
+	String[] labels = { "ucs", "greedy", "astar" };
+	SortBy[] orders = { SortBy.g, SortBy.h, SortBy.f };
+	for (int i = 0; i < orders.length; i++) {
+	    for (final boolean checking : new boolean[] { false, true }) {
+		final SortBy sortBy = orders[i];
+		String name = String.format("%s/%s/%dx%d", labels[i],
+					    checking ? "checked" : "unchecked",
+					    width, width);
+		measure(name, 1, new Runnable() {
+			public void run() {
+			    Waypoint goal = search(stateSpace, heuristic,
+						   sortBy, startName,
+						   finishName, checking);
+			    if (goal != null)
+				sink += goal.partialPathCost;
+			}
+		    });
+	    }
+	}
+    }
+
+    // runFrontierSearches -- Time uniform-cost and A* search, with repeated
+    // state checking, using each kind of frontier that BestFirstSearch can
+    // select, on a grid of the given width.
+    public void runFrontierSearches(int width) {
+	Map stateSpace = generateMap(width, width);
+	String startName = stateSpace.locations.get(0).name;
+	String finishName
+	    = stateSpace.locations.get(stateSpace.locations.size() - 1).name;
+	String[] labels = { "ucs", "astar" };
+	SortBy[] orders = { SortBy.g, SortBy.f };
+	for (int i = 0; i < orders.length; i++) {
+	    for (BestFirstSearch.FrontierType type
+		     : BestFirstSearch.FrontierType.values()) {
+		final BestFirstSearch engine
+		    = new BestFirstSearch(stateSpace,
+					  new GeometricHeuristic(1.0),
+					  orders[i], startName, finishName,
+					  stateSpace.locations.size());
+		engine.setFrontierType(type, 100.0);
+		String name = String.format("%s/%s/%dx%d", labels[i], type,
+					    width, width);
+		measure(name, 1, new Runnable() {
+			public void run() {
+			    Waypoint goal = engine.search(true);
+			    if (goal != null)
+				sink += goal.partialPathCost;
+			}
+		    });
+	    }
+	}
+    }
+
+    // runFrontierOperations -- Time the basic frontier and comparator
+    // operations on a frontier holding the given number of nodes.
+    public void runFrontierOperations(final int size) {
+	Map stateSpace = generateMap((int) Math.ceil(Math.sqrt(size)), size);
+	final Waypoint[] nodes = new Waypoint[size];
+	Random rnd = new Random(size);
+	for (int i = 0; i < size; i++) {
+	    nodes[i] = new Waypoint(stateSpace.locations.get(i));
+	    nodes[i].partialPathCost = 100.0 * rnd.nextDouble();
+	    nodes[i].heuristicValue = 100.0 * rnd.nextDouble();
+	}
+	final SortedFrontier full = new SortedFrontier(SortBy.f);
+	full.addSorted(Arrays.asList(nodes));
+	measure("SortedFrontier.addSorted/" + size, size, new Runnable() {
+		public void run() {
+		    SortedFrontier fringe = new SortedFrontier(SortBy.f);
+		    for (Waypoint wp : nodes)
+			fringe.addSorted(wp);
+		    sink += fringe.isEmpty() ? 0 : 1;
+		}
+	    });
+	// The frontier is filled before each timed run, so that only the
+	// removals are timed ...
+	final SortedFrontier[] filled = new SortedFrontier[1];
+	measure("SortedFrontier.removeTop/" + size, size, new Runnable() {
+		public void run() {
+		    filled[0] = new SortedFrontier(SortBy.f);
+		    filled[0].addSorted(Arrays.asList(nodes));
+		}
+	    }, new Runnable() {
+		public void run() {
+		    SortedFrontier fringe = filled[0];
+		    while (!(fringe.isEmpty()))
+			sink += fringe.removeTop().partialPathCost;
+		}
+	    });
+	final int probes = Math.min(size, 1000);
+	measure("SortedFrontier.contains/" + size, probes, new Runnable() {
+		public void run() {
+		    for (int i = 0; i < probes; i++)
+			if (full.contains(nodes[(i * 7919) % size].loc.name))
+			    sink += 1;
+		}
+	    });
+	final WaypointComparator comparator = new WaypointComparator(SortBy.f);
+	measure("WaypointComparator.compare/" + size, size, new Runnable() {
+		public void run() {
+		    int total = 0;
+		    for (int i = 0; i < size; i++)
+			total += comparator.compare(nodes[i],
+						    nodes[(i + 1) % size]);
+		    sink += total;
+		}
+	    });
+    }
+
+    // main -- Run every benchmark, on grids of the widths given as arguments
+    // or on a default set of widths, reporting to the standard output.
+    public static void main(String[] args) {
+	int[] widths = { 10, 20, 40, 80 };
+	if (args.length > 0) {
+	    widths = new int[args.length];
+	    for (int i = 0; i < args.length; i++)
+		widths[i] = Integer.parseInt(args[i]);
+	}
+	RoutingBenchmark bench = new RoutingBenchmark(System.out);
+	bench.out.printf("%-40s %14s %14s\n", "BENCHMARK", "MEAN(ns/op)",
+			 "BEST(ns/op)");
+	for (int width : widths)
+	    bench.runSearches(width);
+	for (int width : widths)
+	    bench.runFrontierSearches(width);
+	for (int width : widths)
+	    bench.runFrontierOperations(width * width);
+    }
+
+}
@@ -0,0 +1,271 @@
+//
+// RoutingSnapshot
+//
+// This class bundles everything needed to answer routing queries into a
+// single binary file:  the map itself, landmark heuristic tables, and a hub
+// labeling index for distance queries, the last two being optional.  A
+// snapshot file is mapped into memory, rather than read, and the landmark
+// tables and hub labels are used directly from the mapping, so a worker
+// only has to rebuild the Location and Road objects of the map before it
+// is ready to search, with no text parsing or preprocessing.  The file
+// starts with a table of contents, giving a tag, an offset, and a length
+// (as 32-bit integers) for each section, with every section starting on an
+// eight byte boundary.  The map section holds the number of locations, the
+// number of roads, the number of distinct names, and the number of bytes
+// of name text, followed by the coordinates of each location, the cost of
+// each road, the "from" location, "to" location, and name of each road,
+// the starting position of each name in the text, and the UTF-8 text of
+// the names.  Roads are listed in the order in which they are recorded in
+// their "from" locations.  The other sections are in the formats written by
+// LandmarkHeuristic and HubLabelIndex.
+//
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+
+public class RoutingSnapshot {
+    static final int MAGIC = 0x524e5331;      // "RNS1"
+    static final int MAP_TAG = 0x4d415031;    // "MAP1"
+    static final int LANDMARK_TAG = 0x4c4d4b31;
+    static final int HUB_TAG = 0x48554231;
+    public Map stateSpace;
+    public LandmarkHeuristic landmarks;       // null if not included
+    public HubLabelIndex hubLabels;           // null if not included
+
+    // Constructor with the contents of the snapshot specified ...
+    public RoutingSnapshot(Map stateSpace, LandmarkHeuristic landmarks,
+			   HubLabelIndex hubLabels) {
+	this.stateSpace = stateSpace;
+	this.landmarks = landmarks;
+	this.hubLabels = hubLabels;
+    }
+
+    // write -- Write this snapshot to the given stream in the binary format
+    // described above.
+    public void write(OutputStream str) throws IOException {
+	List<Integer> tags = new ArrayList<Integer>();
+	List<byte[]> sections = new ArrayList<byte[]>();
+	ByteArrayOutputStream section = new ByteArrayOutputStream();
+	writeMap(new DataOutputStream(section));
+	tags.add(MAP_TAG);
+	sections.add(section.toByteArray());
+	if (landmarks != null) {
+	    section = new ByteArrayOutputStream();
+	    landmarks.write(section);
+	    tags.add(LANDMARK_TAG);
+	    sections.add(section.toByteArray());
+	}
+	if (hubLabels != null) {
+	    section = new ByteArrayOutputStream();
+	    hubLabels.write(section);
+	    tags.add(HUB_TAG);
+	    sections.add(section.toByteArray());
+	}
+	DataOutputStream out
+	    = new DataOutputStream(new BufferedOutputStream(str));
+	out.writeInt(MAGIC);
+	out.writeInt(sections.size());
+	int offset = align(8 + (12 * sections.size()));
+	for (int i = 0; i < sections.size(); i++) {
+	    out.writeInt(tags.get(i));
+	    out.writeInt(offset);
+	    out.writeInt(sections.get(i).length);
+	    offset = align(offset + sections.get(i).length);
+	}
+	pad(out, 8 + (12 * sections.size()));
+	for (byte[] bytes : sections) {
+	    out.write(bytes);
+	    pad(out, bytes.length);
+	}
+	out.flush();
+    }
+
+    // write -- Write this snapshot to the file with the given pathname.
+    // Return false on error.
+    public boolean write(String filename) {
+	try {
+	    FileOutputStream fileOut = new FileOutputStream(filename);
+	    try {
+		write(fileOut);
+	    } finally {
+		fileOut.close();
+	    }
+	    return (true);
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (false);
+	}
+    }
+
+    // writeMap -- Write the map section to the given stream.
+    void writeMap(DataOutputStream out) throws IOException {
+	List<Location> locs = stateSpace.locations;
+	List<Road> roads = new ArrayList<Road>();
+	for (Location loc : locs)
+	    roads.addAll(loc.roads);
+	// Location names come first in the name table, followed by the
+	// distinct road names ...
+	List<String> names = new ArrayList<String>();
+	HashMap<String, Integer> roadNames = new HashMap<String, Integer>();
+	for (Location loc : locs)
+	    names.add(loc.name);
+	int[] roadName = new int[roads.size()];
+	for (int i = 0; i < roads.size(); i++) {
+	    String name = (roads.get(i).name == null) ? "" : roads.get(i).name;
+	    Integer index = roadNames.get(name);
+	    if (index == null) {
+		index = names.size();
+		names.add(name);
+		roadNames.put(name, index);
+	    }
+	    roadName[i] = index;
+	}
+	ByteArrayOutputStream text = new ByteArrayOutputStream();
+	int[] nameStart = new int[names.size() + 1];
+	for (int i = 0; i < names.size(); i++) {
+	    text.write(names.get(i).getBytes(StandardCharsets.UTF_8));
+	    nameStart[i + 1] = text.size();
+	}
+	out.writeInt(locs.size());
+	out.writeInt(roads.size());
+	out.writeInt(names.size());
+	out.writeInt(text.size());
+	for (Location loc : locs)
+	    out.writeDouble(loc.longitude);
+	for (Location loc : locs)
+	    out.writeDouble(loc.latitude);
+	for (Road r : roads)
+	    out.writeDouble(r.cost);
+	for (Road r : roads)
+	    out.writeInt(r.fromLocation.id);
+	for (Road r : roads)
+	    out.writeInt(r.toLocation.id);
+	for (int i : roadName)
+	    out.writeInt(i);
+	for (int i : nameStart)
+	    out.writeInt(i);
+	text.writeTo(out);
+	out.flush();
+    }
+
+    // map -- Return the snapshot in the file with the given pathname, which
+    // is mapped into memory rather than read.  Return null on error.
+    public static RoutingSnapshot map(String filename) {
+	try {
+	    RandomAccessFile file = new RandomAccessFile(filename, "r");
+	    try {
+		FileChannel channel = file.getChannel();
+		// The mapping remains valid after the channel is closed ...
+		return (map(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size())));
+	    } finally {
+		file.close();
+	    }
+	} catch (IOException e) {
+	    // Something went wrong ...
+	    return (null);
+	}
+    }
+
+    // map -- Return the snapshot held in the given buffer, starting at its
+    // current position.  Return null if the buffer does not hold a valid
+    // snapshot.
+    public static RoutingSnapshot map(ByteBuffer buffer) {
+	try {
+	    ByteBuffer bytes = buffer.slice();
+	    if (bytes.getInt(0) != MAGIC)
+		return (null);
+	    RoutingSnapshot snapshot = new RoutingSnapshot(null, null, null);
+	    int count = bytes.getInt(4);
+	    for (int i = 0; i < count; i++) {
+		int tag = bytes.getInt(8 + (12 * i));
+		int offset = bytes.getInt(12 + (12 * i));
+		int length = bytes.getInt(16 + (12 * i));
+		ByteBuffer view = bytes.duplicate();
+		view.position(offset);
+		view.limit(offset + length);
+		view = view.slice();
+		if (tag == MAP_TAG)
+		    snapshot.stateSpace = readMap(view);
+		else if (tag == LANDMARK_TAG)
+		    snapshot.landmarks = LandmarkHeuristic.map(view);
+		else if (tag == HUB_TAG)
+		    snapshot.hubLabels = HubLabelIndex.map(view);
+		// Unknown sections are skipped ...
+	    }
+	    if (snapshot.stateSpace == null)
+		return (null);
+	    return (snapshot);
+	} catch (RuntimeException e) {
+	    // The buffer is too short or otherwise malformed ...
+	    return (null);
+	}
+    }
+
+    // readMap -- Return the map held in the given map section.
+    static Map readMap(ByteBuffer bytes) {
+	int n = bytes.getInt(0);
+	int m = bytes.getInt(4);
+	int s = bytes.getInt(8);
+	int textLength = bytes.getInt(12);
+	int pos = 16;
+	DoubleBuffer longitude = HubLabelIndex.doubles(bytes, pos, n);
+	pos += 8 * n;
+	DoubleBuffer latitude = HubLabelIndex.doubles(bytes, pos, n);
+	pos += 8 * n;
+	DoubleBuffer cost = HubLabelIndex.doubles(bytes, pos, m);
+	pos += 8 * m;
+	IntBuffer from = HubLabelIndex.ints(bytes, pos, m);
+	pos += 4 * m;
+	IntBuffer to = HubLabelIndex.ints(bytes, pos, m);
+	pos += 4 * m;
+	IntBuffer roadName = HubLabelIndex.ints(bytes, pos, m);
+	pos += 4 * m;
+	IntBuffer nameStart = HubLabelIndex.ints(bytes, pos, s + 1);
+	pos += 4 * (s + 1);
+	byte[] text = new byte[textLength];
+	ByteBuffer textView = bytes.duplicate();
+	textView.position(pos);
+	textView.get(text);
+	String[] names = new String[s];
+	for (int i = 0; i < s; i++)
+	    names[i] = new String(text, nameStart.get(i),
+				  nameStart.get(i + 1) - nameStart.get(i),
+				  StandardCharsets.UTF_8);
+	// Rebuild the map ...
+	Map stateSpace = new Map();
+	for (int i = 0; i < n; i++)
+	    stateSpace.recordLocation(new Location(names[i], longitude.get(i),
+						   latitude.get(i)));
+	for (int i = 0; i < m; i++) {
+	    Road r = new Road();
+	    r.name = names[roadName.get(i)];
+	    r.fromLocation = stateSpace.locations.get(from.get(i));
+	    r.toLocation = stateSpace.locations.get(to.get(i));
+	    r.fromLocationName = r.fromLocation.name;
+	    r.toLocationName = r.toLocation.name;
+	    r.cost = cost.get(i);
+	    r.fromLocation.recordRoad(r);
+	}
+	stateSpace.noteModification();
+	return (stateSpace);
+    }
+
+    // align -- Round the given offset up to a multiple of eight bytes.
+    static int align(int offset) {
+	return ((offset + 7) & ~7);
+    }
+
+    // pad -- Write zero bytes after a block of the given length, so that the
+    // next block is aligned.
+    static void pad(DataOutputStream out, int length) throws IOException {
+	for (int i = length; i < align(length); i++)
+	    out.writeByte(0);
+    }
+
+}
@@ -0,0 +1,378 @@
+//
+// SMAStarSearch
+//
+// This class implements simplified memory-bounded A* (SMA*) search over the
+// locations in a map.  The search proceeds like A*, always growing the
+// search tree below the frontier node with the lowest f-value, but it never
+// keeps more than a fixed number of nodes in memory.  Successors are
+// generated one at a time.  When the memory budget is exhausted, the leaf
+// node with the highest f-value (the shallowest such node, if there is a
+// tie) is forgotten, and its f-value is backed up into its parent.  The
+// parent then remembers the best f-value of its forgotten children, so
+// that the forgotten subtree can be regenerated later if it once again
+// looks like the most promising place to search.  Given an admissible
+// heuristic, and a memory budget large enough to hold the nodes on an
+// optimal solution path, the solution returned is optimal.  Repeated states
+// are pruned against every node in memory:  a generated successor is
+// dropped if some node in memory has reached the same location with a
+// partial path cost, and a depth, no greater than the successor's.  (This
+// includes the nodes on the current path.)  If that node is later
+// forgotten, its forgotten subtree stands for the dropped successor.  The
+// search is depth-limited, in the same way as the other search classes,
+// and objects of this class maintain the total number of nodes expanded
+// during the last call to "search".
+//
+
+
+import java.util.*;
+
+
+// SMANode -- The bookkeeping kept for each Waypoint in memory during an
+// SMA* search.  Each road leading out of the node's location is in one of
+// four states:  not yet generated, in memory, forgotten (with the backed up
+// f-value of the forgotten child recorded), or dead (leading to a location
+// already reached at no greater cost by a node in memory).
+class SMANode {
+    static final byte UNGENERATED = 0;
+    static final byte IN_MEMORY = 1;
+    static final byte FORGOTTEN = 2;
+    static final byte DEAD = 3;
+
+    Waypoint wp;
+    SMANode parent;
+    int roadIndex;            // index of the road leading here from parent
+    double f;
+    long serial;              // used to break ties in the open list
+    byte[] roadState;
+    double[] forgottenF;
+    List<SMANode> children;
+    boolean inOpen = false;
+
+    // Constructor with Waypoint, parent node, and road index specified ...
+    public SMANode(Waypoint wp, SMANode parent, int roadIndex, long serial) {
+	this.wp = wp;
+	this.parent = parent;
+	this.roadIndex = roadIndex;
+	this.serial = serial;
+	this.roadState = new byte[wp.loc.roads.size()];
+	this.forgottenF = new double[wp.loc.roads.size()];
+	this.children = new ArrayList<SMANode>();
+    }
+
+    // nextSuccessor -- Return the index of the road that should be used to
+    // generate the next successor of this node, or -1 if every successor
+    // is either in memory or dead.  Ungenerated successors come first, in
+    // road order, then the forgotten successor with the lowest f-value.
+    int nextSuccessor() {
+	int best = -1;
+	for (int i = 0; i < roadState.length; i++) {
+	    if (roadState[i] == UNGENERATED)
+		return (i);
+	    if ((roadState[i] == FORGOTTEN) &&
+		((best < 0) || (forgottenF[i] < forgottenF[best])))
+		best = i;
+	}
+	return (best);
+    }
+
+}
+
+
+// SMANodeComparator -- Order SMA* nodes by increasing f-value, with deeper
+// nodes first among nodes with equal f-values.  Read backwards, this order
+// puts the shallowest node with the highest f-value first, which is the
+// node to be forgotten when memory runs out.
+class SMANodeComparator implements Comparator<SMANode> {
+
+    // compare -- Determine which of two SMA* nodes is "larger", according
+    // to the Comparator protocol.
+    public int compare(SMANode n1, SMANode n2) {
+	if (n1.f < n2.f)
+	    return (-1);
+	if (n1.f > n2.f)
+	    return (1);
+	if (n1.wp.depth > n2.wp.depth)
+	    return (-1);
+	if (n1.wp.depth < n2.wp.depth)
+	    return (1);
+	return (Long.compare(n1.serial, n2.serial));
+    }
+
+}
+
+
+public class SMAStarSearch {
+    Map stateSpace;
+    Heuristic heuristic;
+    public String startName;
+    public String finishName;
+    int depthLimit = 10000;
+    int memoryLimit = 10000;  // maximum number of nodes held in memory
+    public int expansionCount = 0;
+    public int forgottenCount = 0;
+    // Search state, valid only during a call to "search" ...
+    TreeSet<SMANode> open;
+    java.util.Map<Integer, List<SMANode>> resident;   // by location id
+    int nodesInMemory = 0;
+    long serialCounter = 0;
+
+    // Default constructor ...
+    public SMAStarSearch() {
+	this.stateSpace = null;
+	this.heuristic = new Heuristic();
+	this.startName = "";
+	this.finishName = "";
+	this.depthLimit = 10000;
+	this.memoryLimit = 10000;
+	this.expansionCount = 0;
+	this.forgottenCount = 0;
+    }
+
+    // Constructor with state space, heuristic, and search parameters
+    // specified.  The memory limit is the maximum number of search tree
+    // nodes that may be held in memory at any one time ...
+    public SMAStarSearch(Map stateSpace, Heuristic heuristic,
+			 String startName, String finishName, int depthLimit,
+			 int memoryLimit) {
+	this();
+	this.stateSpace = stateSpace;
+	this.heuristic = heuristic;
+	this.startName = startName;
+	this.finishName = finishName;
+	this.depthLimit = depthLimit;
+	// At least a node and one child must fit in memory ...
+	this.memoryLimit = Math.max(2, memoryLimit);
+    }
+
+    // search -- Perform a memory-bounded A* search from the initial
+    // location to the destination location.  Return the goal node, or null
+    // if no solution could be found within the depth limit and memory limit.
+    public Waypoint search() {
+	// Find initial and final locations ...
+	Location initialLoc = stateSpace.findLocation(startName);
+	Location finalLoc = stateSpace.findLocation(finishName);
+	if ((initialLoc == null) || (finalLoc == null))
+	    // Invalid location name, so return failure ...
+	    return (null);
+	heuristic.setDestination(finalLoc);
+	// Initialize the search state ...
+	open = new TreeSet<SMANode>(new SMANodeComparator());
+	resident = new HashMap<Integer, List<SMANode>>();
+	nodesInMemory = 0;
+	serialCounter = 0;
+	expansionCount = 0;
+	forgottenCount = 0;
+	// Make the initial node ...
+	Waypoint initialWP = new Waypoint(initialLoc);
+	initialWP.heuristicValue = heuristic.heuristicFunction(initialWP);
+	SMANode root = new SMANode(initialWP, null, -1, serialCounter++);
+	root.f = initialWP.heuristicValue;
+	addToOpen(root);
+	addResident(root);
+	nodesInMemory = 1;
+	// Start searching, and keep searching until the open list is empty ...
+	while (!(open.isEmpty())) {
+	    SMANode best = open.first();
+	    if (best.f == Double.POSITIVE_INFINITY)
+		// Nothing reachable within the memory limit ...
+		return (null);
+	    if (best.wp.isFinalDestination(finishName))
+		return (best.wp);
+	    if (best.wp.depth >= depthLimit)
+		// Failure to find a solution within the allowed depth ...
+		return (null);
+	    int i = best.nextSuccessor();
+	    if (i < 0) {
+		// Every successor is in memory or dead, so this node only
+		// stands for its children now ...
+		retire(best);
+		continue;
+	    }
+	    expansionCount++;
+	    SMANode child = generate(best, i);
+	    if (child != null) {
+		addToOpen(child);
+		addResident(child);
+		nodesInMemory++;
+	    }
+	    if (best.nextSuccessor() < 0) {
+		// All of the successors are now in memory (or dead) ...
+		retire(best);
+	    } else {
+		// Once every successor has been generated at least once, the
+		// node's f-value is backed up from its children ...
+		backup(best);
+	    }
+	    // Make room, if necessary ...
+	    while (nodesInMemory > memoryLimit) {
+		if (!(forgetOne()))
+		    break;
+	    }
+	}
+	// The open list is empty, so we have failed to find a solution ...
+	return (null);
+    }
+
+    // generate -- Generate the successor of the given node along the road
+    // with the given index, returning the new node.  If the road leads to a
+    // location already reached at no greater cost by a node in memory,
+    // mark the road dead and return null instead.
+    SMANode generate(SMANode node, int i) {
+	Road r = node.wp.loc.roads.get(i);
+	if (dominated(r.toLocation, node.wp.partialPathCost + r.cost,
+		      node.wp.depth + 1)) {
+	    node.roadState[i] = SMANode.DEAD;
+	    return (null);
+	}
+	Waypoint childWP = new Waypoint(r.toLocation, node.wp);
+	childWP.depth = node.wp.depth + 1;
+	childWP.partialPathCost = node.wp.partialPathCost + r.cost;
+	childWP.heuristicValue = heuristic.heuristicFunction(childWP);
+	SMANode child = new SMANode(childWP, node, i, serialCounter++);
+	if (!(childWP.isFinalDestination(finishName)) &&
+	    (childWP.depth >= memoryLimit - 1)) {
+	    // The path to this node fills memory, so no goal can be reached
+	    // through it ...
+	    child.f = Double.POSITIVE_INFINITY;
+	} else {
+	    // The f-value of a child is never less than that of its parent
+	    // (or that of a previously forgotten copy of the child) ...
+	    child.f = Math.max(node.f,
+			       childWP.partialPathCost
+			       + childWP.heuristicValue);
+	    if (node.roadState[i] == SMANode.FORGOTTEN)
+		child.f = Math.max(child.f, node.forgottenF[i]);
+	}
+	node.roadState[i] = SMANode.IN_MEMORY;
+	node.children.add(child);
+	return (child);
+    }
+
+    // retire -- Remove the given node, all of whose successors are now in
+    // memory (or dead), from the open list, and back up its f-value.  A
+    // node without any children, in memory or forgotten, is a dead end,
+    // so it is removed from memory altogether.
+    void retire(SMANode node) {
+	removeFromOpen(node);
+	if ((node.parent != null) && node.children.isEmpty() &&
+	    (node.nextSuccessor() < 0)) {
+	    SMANode parent = node.parent;
+	    parent.roadState[node.roadIndex] = SMANode.DEAD;
+	    parent.children.remove(node);
+	    removeResident(node);
+	    nodesInMemory--;
+	    if (parent.children.isEmpty() && (parent.nextSuccessor() < 0))
+		retire(parent);
+	    else
+		backup(parent);
+	} else {
+	    backup(node);
+	}
+    }
+
+    // backup -- If none of the successors of the given node remain to be
+    // generated for the first time, set its f-value to the best f-value
+    // among its children (forgotten or not), and propagate any change up
+    // the tree.  A node with no children at all is a dead end.
+    void backup(SMANode node) {
+	while (node != null) {
+	    double bestF = Double.POSITIVE_INFINITY;
+	    for (int i = 0; i < node.roadState.length; i++) {
+		if (node.roadState[i] == SMANode.UNGENERATED)
+		    return;
+		if (node.roadState[i] == SMANode.FORGOTTEN)
+		    bestF = Math.min(bestF, node.forgottenF[i]);
+	    }
+	    for (SMANode child : node.children)
+		bestF = Math.min(bestF, child.f);
+	    if (bestF == node.f)
+		return;
+	    setF(node, bestF);
+	    node = node.parent;
+	}
+    }
+
+    // forgetOne -- Remove the shallowest, highest f-value leaf node from
+    // memory, recording its f-value in its parent.  Return false if there
+    // is no leaf that can be forgotten.
+    boolean forgetOne() {
+	SMANode victim = null;
+	for (SMANode n : open.descendingSet()) {
+	    if ((n.parent != null) && (n.children.isEmpty())) {
+		victim = n;
+		break;
+	    }
+	}
+	if (victim == null)
+	    return (false);
+	removeFromOpen(victim);
+	SMANode parent = victim.parent;
+	parent.roadState[victim.roadIndex] = SMANode.FORGOTTEN;
+	parent.forgottenF[victim.roadIndex] = victim.f;
+	parent.children.remove(victim);
+	removeResident(victim);
+	nodesInMemory--;
+	forgottenCount++;
+	// The parent must be searched again to regenerate this child ...
+	if (!(parent.inOpen))
+	    addToOpen(parent);
+	backup(parent);
+	return (true);
+    }
+
+    // dominated -- Return true if and only if some node in memory has
+    // reached the given location with a partial path cost no greater than
+    // the given cost, and a depth no greater than the given depth (so that
+    // the depth and memory limits cut it off no sooner).
+    boolean dominated(Location loc, double cost, int depth) {
+	List<SMANode> sameLoc = resident.get(loc.id);
+	if (sameLoc != null)
+	    for (SMANode n : sameLoc)
+		if ((n.wp.partialPathCost <= cost) && (n.wp.depth <= depth))
+		    return (true);
+	return (false);
+    }
+
+    // addResident -- Record that the given node is in memory.
+    void addResident(SMANode node) {
+	List<SMANode> sameLoc = resident.get(node.wp.loc.id);
+	if (sameLoc == null) {
+	    sameLoc = new ArrayList<SMANode>(1);
+	    resident.put(node.wp.loc.id, sameLoc);
+	}
+	sameLoc.add(node);
+    }
+
+    // removeResident -- Record that the given node is no longer in memory.
+    void removeResident(SMANode node) {
+	List<SMANode> sameLoc = resident.get(node.wp.loc.id);
+	sameLoc.remove(node);
+	if (sameLoc.isEmpty())
+	    resident.remove(node.wp.loc.id);
+    }
+
+    // setF -- Change the f-value of the given node, keeping the open list
+    // properly sorted.
+    void setF(SMANode node, double f) {
+	if (node.inOpen) {
+	    open.remove(node);
+	    node.f = f;
+	    open.add(node);
+	} else {
+	    node.f = f;
+	}
+    }
+
+    // addToOpen -- Add the given node to the open list.
+    void addToOpen(SMANode node) {
+	open.add(node);
+	node.inOpen = true;
+    }
+
+    // removeFromOpen -- Remove the given node from the open list.
+    void removeFromOpen(SMANode node) {
+	open.remove(node);
+	node.inOpen = false;
+    }
+
+}
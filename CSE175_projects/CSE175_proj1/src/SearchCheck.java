@@ -0,0 +1,162 @@
+//
+// SearchCheck
+//
+// This class provides a "main" method that checks the search classes
+// against cases that they have gotten wrong in the past.  Each check prints
+// a line saying whether it passed, and the exit status is nonzero if some
+// check fails.
+//
+
+
+import java.util.*;
+
+
+public class SearchCheck {
+    static boolean allPassed = true;
+
+    // check -- Report the result of the named check.
+    static void check(String name, boolean passed, String detail) {
+	System.out.printf("%s %s: %s\n", passed ? "PASS" : "FAIL", name,
+			  detail);
+	if (!passed)
+	    allPassed = false;
+    }
+
+    // node -- Return a frontier node at a new location, with the given
+    // partial path cost.
+    static Waypoint node(int i, double cost) {
+	Waypoint wp = new Waypoint(new Location("loc-" + i, i, 0));
+	wp.partialPathCost = cost;
+	return (wp);
+    }
+
+    // checkBucketGrowth -- Add nodes to a BucketFrontier with keys below
+    // that of the current bucket, after the queue has emptied, and make
+    // sure that the bucket array only grows to cover the keys in the queue
+    // and that the nodes come out in order.
+    static void checkBucketGrowth() {
+	BucketFrontier fringe = new BucketFrontier(SortBy.g, 1.0);
+	fringe.addSorted(node(0, 100.0));
+	fringe.removeTop();
+	// The roads of a location, listed in decreasing cost ...
+	for (int i = 1; i <= 40; i++)
+	    fringe.addSorted(node(i, 200.0 - i));
+	double last = Double.NEGATIVE_INFINITY;
+	boolean ordered = true;
+	while (!(fringe.isEmpty())) {
+	    double cost = fringe.removeTop().partialPathCost;
+	    ordered = ordered && (cost >= last);
+	    last = cost;
+	}
+	check("bucket frontier, decreasing keys after emptying",
+	      ordered && (fringe.buckets.size() <= 64),
+	      fringe.buckets.size() + " buckets");
+	// Random additions and removals over a small range of keys ...
+	fringe = new BucketFrontier(SortBy.g, 1.0);
+	Random rnd = new Random(29);
+	last = Double.NEGATIVE_INFINITY;
+	ordered = true;
+	for (int i = 0; i < 100000; i++) {
+	    if (fringe.isEmpty() || (rnd.nextInt(3) != 0)) {
+		double floor = Math.max(0.0, last);
+		fringe.addSorted(node(i, Math.floor(floor + rnd.nextInt(50))));
+	    } else {
+		double cost = fringe.removeTop().partialPathCost;
+		ordered = ordered && (cost >= last);
+		last = cost;
+	    }
+	}
+	check("bucket frontier, random keys in a range of 50",
+	      ordered && (fringe.buckets.size() <= 128),
+	      fringe.buckets.size() + " buckets");
+    }
+
+    // checkFrontierSearches -- Make sure that uniform-cost search finds the
+    // same path cost with each kind of frontier, on a star whose roads are
+    // listed in decreasing cost and on a grid.
+    static void checkFrontierSearches() {
+	Map star = new Map();
+	Location hub = new Location("hub", 0, 0);
+	star.recordLocation(hub);
+	for (int i = 1; i <= 40; i++) {
+	    Location spoke = new Location("spoke-" + i, i, 0);
+	    star.recordLocation(spoke);
+	    RoutingBenchmark.connect(hub, spoke, 100.0 - i);
+	}
+	Map grid = RoutingBenchmark.generateMap(10, 10);
+	Map[] maps = { star, grid };
+	String[][] ends = { { "hub", "spoke-1" }, { "loc-0-0", "loc-9-9" } };
+	for (int m = 0; m < maps.length; m++) {
+	    StringBuilder costs = new StringBuilder();
+	    Waypoint sorted = null;
+	    boolean same = true;
+	    for (BestFirstSearch.FrontierType type
+		     : BestFirstSearch.FrontierType.values()) {
+		BestFirstSearch engine
+		    = new BestFirstSearch(maps[m], new Heuristic(), SortBy.g,
+					  ends[m][0], ends[m][1], 1000);
+		engine.setFrontierType(type, 1000.0);
+		Waypoint goal = engine.search(true);
+		if (sorted == null)
+		    sorted = goal;
+		same = same && (goal != null) &&
+		    (Math.abs(goal.partialPathCost - sorted.partialPathCost)
+		     < 0.01);
+		costs.append(String.format("%s %.3f ", type,
+					   (goal == null) ? Double.NaN
+					   : goal.partialPathCost));
+	    }
+	    check("uniform-cost search with each frontier, " + ends[m][0]
+		  + " to " + ends[m][1], same, costs.toString().trim());
+	}
+    }
+
+    // checkMemoryBoundedSearches -- Make sure that IDA* and SMA* find
+    // optimal paths across grids without searching exponentially many
+    // nodes.  The expansion bounds are far above what the searches need
+    // with pruning of repeated states, and far below what they need
+    // without it.
+    static void checkMemoryBoundedSearches() {
+	// Grid widths, SMA* memory budgets, and expansion bounds ...
+	int[][] cases = { { 8, 40, 20000, 100000 },
+			  { 10, 40, 40000, 2000000 },
+			  { 10, 200, 40000, 20000 } };
+	for (int[] c : cases) {
+	    Map grid = RoutingBenchmark.generateMap(c[0], c[0]);
+	    String start = "loc-0-0";
+	    String finish = "loc-" + (c[0] - 1) + "-" + (c[0] - 1);
+	    String size = c[0] + "x" + c[0] + " grid";
+	    BestFirstSearch astar
+		= new BestFirstSearch(grid, new GeometricHeuristic(1.0),
+				      SortBy.f, start, finish, 10000);
+	    double best = astar.search(true).partialPathCost;
+	    IDAStarSearch ida
+		= new IDAStarSearch(grid, new GeometricHeuristic(1.0), start,
+				    finish, 10000);
+	    Waypoint goal = ida.search();
+	    check("IDA* on a " + size,
+		  (goal != null) &&
+		  (Math.abs(goal.partialPathCost - best) < 1.0e-9) &&
+		  (ida.expansionCount <= c[2]),
+		  ida.expansionCount + " expansions");
+	    SMAStarSearch sma
+		= new SMAStarSearch(grid, new GeometricHeuristic(1.0), start,
+				    finish, 10000, c[1]);
+	    goal = sma.search();
+	    check("SMA* on a " + size + ", " + c[1] + " nodes",
+		  (goal != null) &&
+		  (Math.abs(goal.partialPathCost - best) < 1.0e-9) &&
+		  (sma.expansionCount <= c[3]),
+		  sma.expansionCount + " expansions");
+	}
+    }
+
+    public static void main(String[] args) {
+	checkBucketGrowth();
+	checkFrontierSearches();
+	checkMemoryBoundedSearches();
+	if (!allPassed)
+	    System.exit(1);
+    }
+
+}
@@ -0,0 +1,131 @@
+//
+// ShortestPathTree
+//
+// This class records the result of a uniform-cost search from a single
+// origin location that is allowed to run until every reachable location on
+// the map has been expanded.  Rather than keeping Waypoint objects, the
+// search tree is stored as two arrays indexed by location identifier:  the
+// cost of the shortest path from the origin to each location and the
+// identifier of the previous location on that path.  Once the tree has
+// been built, the shortest path from the origin to any destination can be
+// read off of these arrays, without any further search, and returned as
+// a chain of Waypoint objects, just as a search would return it.  A tree
+// may also be built in reverse, by searching backward along roads from a
+// destination, in which case it records the cost of the shortest path from
+// each location to that destination and the next location on that path.
+//
+
+
+import java.util.*;
+
+
+public class ShortestPathTree {
+    public Location origin;
+    public double[] dist;       // infinite for unreachable locations
+    public int[] parent;        // -1 for the origin and unreachable locations
+    public boolean reverse = false;
+    public int expansionCount = 0;
+    Map stateSpace;
+
+    // Constructor with state space and origin location specified.  The
+    // uniform-cost search is performed immediately ...
+    public ShortestPathTree(Map stateSpace, Location origin) {
+	this(stateSpace, origin, false);
+    }
+
+    // Constructor with state space, origin location, and search direction
+    // specified.  If "reverse" is true, the origin is taken to be the
+    // destination of every path in the tree ...
+    public ShortestPathTree(Map stateSpace, Location origin,
+			    boolean reverse) {
+	this.stateSpace = stateSpace;
+	this.origin = origin;
+	this.reverse = reverse;
+	int size = stateSpace.locations.size();
+	this.dist = new double[size];
+	this.parent = new int[size];
+	Arrays.fill(dist, Double.POSITIVE_INFINITY);
+	Arrays.fill(parent, -1);
+	search(new LocationHeap(size));
+    }
+
+    // search -- Expand every location reachable from the origin (or, in
+    // reverse, every location that can reach the origin) in order of
+    // increasing path cost, filling in the distance and parent arrays.
+    void search(LocationHeap fringe) {
+	List<List<Road>> links = reverse ? incomingRoads(stateSpace) : null;
+	boolean[] expanded = new boolean[dist.length];
+	dist[origin.id] = 0.0;
+	fringe.insertOrLower(origin.id, 0.0);
+	while (!(fringe.isEmpty())) {
+	    int u = fringe.removeMin();
+	    expanded[u] = true;
+	    expansionCount++;
+	    List<Road> roads = reverse ? links.get(u)
+		: stateSpace.locations.get(u).roads;
+	    for (Road r : roads) {
+		int v = reverse ? r.fromLocation.id : r.toLocation.id;
+		double g = dist[u] + r.cost;
+		if (!expanded[v] && (g < dist[v])) {
+		    dist[v] = g;
+		    parent[v] = u;
+		    fringe.insertOrLower(v, g);
+		}
+	    }
+	}
+    }
+
+    // incomingRoads -- Return, for each location on the given map, the list
+    // of roads leading into it.
+    static List<List<Road>> incomingRoads(Map stateSpace) {
+	int size = stateSpace.locations.size();
+	List<List<Road>> incoming = new ArrayList<List<Road>>(size);
+	for (int i = 0; i < size; i++)
+	    incoming.add(new ArrayList<Road>());
+	for (Location loc : stateSpace.locations)
+	    for (Road r : loc.roads)
+		incoming.get(r.toLocation.id).add(r);
+	return (incoming);
+    }
+
+    // distanceTo -- Return the cost of the shortest path from the origin to
+    // the given location, or infinity if it cannot be reached.
+    public double distanceTo(Location destination) {
+	return (dist[destination.id]);
+    }
+
+    // pathTo -- Return the goal node at the end of the shortest path from
+    // the origin to the given location, or null if it cannot be reached.
+    // In a reverse tree, the path runs from the given location to the
+    // origin, instead.
+    public Waypoint pathTo(Location destination) {
+	if (dist[destination.id] == Double.POSITIVE_INFINITY)
+	    return (null);
+	LinkedList<Location> path = new LinkedList<Location>();
+	for (int v = destination.id; v >= 0; v = parent[v]) {
+	    if (reverse)
+		path.addLast(stateSpace.locations.get(v));
+	    else
+		path.addFirst(stateSpace.locations.get(v));
+	}
+	Waypoint node = null;
+	for (Location loc : path) {
+	    Waypoint next = new Waypoint(loc, node);
+	    if (node != null)
+		next.depth = node.depth + 1;
+	    if (reverse)
+		next.partialPathCost = dist[destination.id] - dist[loc.id];
+	    else
+		next.partialPathCost = dist[loc.id];
+	    node = next;
+	}
+	return (node);
+    }
+
+    // memorySize -- Return the approximate number of bytes of memory used
+    // by the arrays in this tree.
+    public long memorySize() {
+	return (32L + (12L * dist.length));
+    }
+
+}
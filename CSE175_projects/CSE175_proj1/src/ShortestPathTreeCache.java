@@ -0,0 +1,129 @@
+//
+// ShortestPathTreeCache
+//
+// This class answers shortest-path queries using complete uniform-cost
+// search trees, one for each origin location.  The first query from a given
+// origin builds a ShortestPathTree for that origin, covering every location
+// on the map, and later queries from the same origin, to any destination,
+// are answered by reading that tree.  The trees are kept in a cache that
+// holds at most a given number of bytes worth of trees.  When the cache is
+// full, the tree that was least recently used is discarded.  This works
+// well when most queries start from a small number of origins (e.g.,
+// depots).  When the map's modification count changes, every tree is
+// discarded, and a tree built while the map was changing is not kept.
+// The cache may be shared by several threads.  Objects of this class count
+// the number of queries that were answered from the cache and the number
+// that required a search.
+//
+
+
+import java.util.*;
+
+
+public class ShortestPathTreeCache {
+    Map stateSpace;
+    long memoryLimit = 64L * 1024L * 1024L;   // in bytes
+    long memoryUsed = 0;
+    LinkedHashMap<String, ShortestPathTree> trees;
+    public int hitCount = 0;
+    public int missCount = 0;
+    int modificationCount;
+
+    // Constructor with state space and memory limit, in bytes, specified ...
+    public ShortestPathTreeCache(Map stateSpace, long memoryLimit) {
+	this.stateSpace = stateSpace;
+	this.memoryLimit = memoryLimit;
+	this.modificationCount = stateSpace.getModificationCount();
+	// An access-ordered map keeps the least recently used tree first ...
+	this.trees = new LinkedHashMap<String, ShortestPathTree>(16, 0.75f,
+								  true);
+    }
+
+    // search -- Return the goal node at the end of the shortest path from
+    // the named initial location to the named destination location, or
+    // null if there is no such path.
+    public Waypoint search(String startName, String finishName) {
+	Location finalLoc = stateSpace.findLocation(finishName);
+	ShortestPathTree tree = treeFrom(startName);
+	if ((tree == null) || (finalLoc == null))
+	    // Invalid location name, so return failure ...
+	    return (null);
+	return (tree.pathTo(finalLoc));
+    }
+
+    // distance -- Return the cost of the shortest path from the named
+    // initial location to the named destination location, or infinity if
+    // there is no such path.
+    public double distance(String startName, String finishName) {
+	Location finalLoc = stateSpace.findLocation(finishName);
+	ShortestPathTree tree = treeFrom(startName);
+	if ((tree == null) || (finalLoc == null))
+	    return (Double.POSITIVE_INFINITY);
+	return (tree.distanceTo(finalLoc));
+    }
+
+    // treeFrom -- Return the shortest path tree for the named origin,
+    // building it if it is not in the cache.  Return null if the origin is
+    // not on the map.
+    public ShortestPathTree treeFrom(String startName) {
+	int count;
+	synchronized (this) {
+	    checkMap();
+	    count = modificationCount;
+	    ShortestPathTree tree = trees.get(startName);
+	    if (tree != null) {
+		hitCount++;
+		return (tree);
+	    }
+	    missCount++;
+	}
+	Location initialLoc = stateSpace.findLocation(startName);
+	if (initialLoc == null)
+	    return (null);
+	// Searching is done outside of the lock, so that other origins can
+	// be served in the meantime ...
+	ShortestPathTree tree = new ShortestPathTree(stateSpace, initialLoc);
+	synchronized (this) {
+	    checkMap();
+	    if (count != modificationCount)
+		// The map changed during the search ...
+		return (tree);
+	    ShortestPathTree old = trees.put(startName, tree);
+	    if (old != null)
+		memoryUsed -= old.memorySize();
+	    memoryUsed += tree.memorySize();
+	    evict(tree);
+	}
+	return (tree);
+    }
+
+    // evict -- Discard the least recently used trees until the cache fits
+    // within its memory limit, never discarding the given tree.
+    void evict(ShortestPathTree keep) {
+	Iterator<ShortestPathTree> it = trees.values().iterator();
+	while ((memoryUsed > memoryLimit) && it.hasNext()) {
+	    ShortestPathTree tree = it.next();
+	    if (tree == keep)
+		continue;
+	    memoryUsed -= tree.memorySize();
+	    it.remove();
+	}
+    }
+
+    // checkMap -- Discard every tree if the map has changed since the trees
+    // were built.
+    void checkMap() {
+	int count = stateSpace.getModificationCount();
+	if (count != modificationCount) {
+	    clear();
+	    modificationCount = count;
+	}
+    }
+
+    // clear -- Discard every tree in the cache.
+    public synchronized void clear() {
+	trees.clear();
+	memoryUsed = 0;
+    }
+
+}
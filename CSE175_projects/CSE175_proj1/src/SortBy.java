@@ -0,0 +1,9 @@
+//
+// SortBy
+//
+// This enumeration names the statistics by which Waypoint objects may be
+// sorted:  partial path cost (g), heuristic value (h), or their sum (f).
+//
+
+
+enum SortBy { g, h, f }
@@ -14,6 +14,9 @@
 // in this node's Location object.  Second, the "reportSolution" recursive 
 // method uses the "previous" references of nodes in the search tree in order
 // to output the path from the initial node of the search tree to this node.
+// Since most nodes are never expanded, an unexpanded node's options list
+// starts with no storage, which is only allocated when a child is added,
+// and expanding a node again refills the same list.
 //
 // David Noelle -- Sun Feb 11 18:26:42 PST 2007
 //
@@ -54,7 +57,7 @@ public class Waypoint {
     // is correctly calculated.  This version of this method, which takes no
     // arguments, always sets the heuristic values of nodes to zero.
     public void expand() {
-	options.removeAll(options);
+	options.clear();
 	for (Road r : loc.roads) {
 	    Waypoint option = new Waypoint(r.toLocation, this);
 	    option.depth = this.depth + 1;
@@ -71,7 +74,7 @@ public class Waypoint {
     // heuristic function object as an argument, uses the given heuristic
     // function to fill in the heuristic values of the children nodes.
     public void expand(Heuristic h) {
-	options.removeAll(options);
+	options.clear();
 	for (Road r : loc.roads) {
 	    Waypoint option = new Waypoint(r.toLocation, this);
 	    option.depth = this.depth + 1;
@@ -0,0 +1,109 @@
+//
+// AnswerTable
+//
+// This class implements a table of answers for one subgoal, for use in
+// tabled resolution.  Subgoals that differ only in the names of their
+// variables ("variants") share a table, so each table is keyed by a
+// variant of its subgoal with its variables renamed, in order of
+// appearance, to "?T0", "?T1", and so on.  Answers are instances of the
+// subgoal, stored in the same form, so that duplicate answers can be
+// recognized with a hash set.  Goals are matched against a live view of the
+// answers, which grows as answers are added.  A table is "complete" once
+// every answer has been found.  Incomplete tables also record their
+// position on the inference engine's completion stack and the lowest
+// position of any incomplete table on which their answers depend, so that
+// groups of mutually dependent tables can be completed together.
+//
+
+
+import java.lang.ref.*;
+import java.util.*;
+
+
+public class AnswerTable {
+
+    public Literal goal;
+    public List<Literal> answers;
+    Set<Literal> answerSet;
+    Map<Term, WeakReference<Term>> groundTerms;   // for canonical answers
+    boolean allGround = true;
+    public boolean complete = false;
+    // Bookkeeping for evaluation ...
+    boolean active = false;          // being evaluated
+    boolean consultedIncomplete = false;
+    int position = -1;               // on the completion stack
+    int lowLink = -1;
+    int passStart = 0;               // number of the current pass
+    int evaluatedAt = 0;             // number of the last pass
+
+    // Constructor with (variant) subgoal and table of canonical ground
+    // terms specified ...
+    public AnswerTable(Literal goal,
+		       Map<Term, WeakReference<Term>> groundTerms) {
+	this.goal = goal;
+	this.groundTerms = groundTerms;
+	this.answers = new ArrayList<Literal>();
+	this.answerSet = new HashSet<Literal>();
+    }
+
+    // addAnswer -- Record the given instance of the subgoal as an answer,
+    // unless a variant of it has already been recorded.  Return true if it
+    // is new.
+    public boolean addAnswer(Literal answer) {
+	Literal key = variant(answer);
+	if (!(answerSet.add(key)))
+	    return (false);
+	if (!(key.allVariables().isEmpty()))
+	    allGround = false;
+	else
+	    key.internTerms(groundTerms);
+	answers.add(key);
+	return (true);
+    }
+
+    // currentAnswers -- Return a view of the answers, with their variables
+    // standardized apart, so that they may be unified with goals.  The view
+    // is live:  answers added to the table later appear at the end of it,
+    // so that a goal matched against an incomplete table also sees answers
+    // found while it is being matched.  The view should not be modified.
+    public List<Literal> currentAnswers() {
+	if (allGround)
+	    return (answers);
+	return (new AbstractList<Literal>() {
+		public Literal get(int i) {
+		    return (answers.get(i).standardizeApart());
+		}
+		public int size() {
+		    return (answers.size());
+		}
+	    });
+    }
+
+    // variant -- Return a copy of the given literal with its variables
+    // renamed, in order of first appearance, to "?T0", "?T1", and so on.
+    public static Literal variant(Literal lit) {
+	List<Variable> order = new ArrayList<Variable>();
+	for (Term arg : lit.args)
+	    collectVariables(arg, order);
+	if (order.isEmpty())
+	    return (lit);
+	BindingList bl = new BindingList();
+	for (int i = 0; i < order.size(); i++)
+	    bl.addBinding(order.get(i), new Term(new Variable("?T" + i)));
+	return (lit.subst(bl));
+    }
+
+    // collectVariables -- Add the variables in the given term to the given
+    // list, in order of first appearance, without duplicates.
+    static void collectVariables(Term t, List<Variable> order) {
+	if (t.v != null) {
+	    if (!(order.contains(t.v)))
+		order.add(t.v);
+	} else if ((t.f != null) && !(t.isGround())) {
+	    for (Term arg : t.f.args)
+		collectVariables(arg, order);
+	}
+    }
+
+
+}
@@ -1,24 +1,53 @@
 //
 // BackwardChain
 //
-// This class implements a backward chaining inference procedure. The
-// implementation is very skeletal, and the resulting reasoning process is
-// not particularly efficient. Knowledge is restricted to the form of
-// definite clauses, grouped into a list of positive literals (facts) and
-// a list of Horn clause implications (rules). The inference procedure
-// maintains a list of goals. On each step, a proof is sought for the
-// first goal in this list, starting by an attempt to unify the goal with
-// any known fact in the knowledge base. If this fails, the rules are
-// examined in the order in which they appear in the knowledge base, searching
-// for a consequent that unifies with the goal. Upon successful unification,
+// This class implements a backward chaining inference procedure. Knowledge
+// is restricted to the form of definite clauses, grouped into a list of
+// positive literals (facts) and a list of Horn clause implications (rules).
+// The inference procedure maintains a list of goals. On each step, a proof
+// is sought for the first goal in this list, starting by an attempt to
+// unify the goal with any known fact in the knowledge base. If this fails,
+// the rules are examined in the order in which they appear in the knowledge
+// base, searching for a consequent that unifies with the goal. The
+// knowledge base indexes facts and rules by predicate, so only those that
+// could possibly match the goal are examined. Upon successful unification,
 // a proof is sought for the conjunction of the rule antecedents. If this
-// fails, further rules are considered. Note that this is a strictly
-// depth-first approach, so it is incomplete. Note, also, that there is
-// no backtracking with regard to matches to facts -- the first match is
-// always taken and other potential matches are ignored. This can make
-// the algorithm incomplete in another way. In short, the order in which
-// facts and rules appear in the knowledge base can have a large influence
-// on the behavior of this inference procedure.
+// fails, further rules are considered. Whenever a goal cannot be proven,
+// the search backtracks chronologically to the most recent goal with a
+// fact or rule left to try, so no proof is missed because an earlier match
+// was committed to. The search is carried out by a ProofIterator, which
+// finds answers one at a time, only as they are requested, so every answer
+// to a query may be obtained from the "answers" or "askAll" methods. Note,
+// though, that this is a strictly depth-first approach, so it is
+// incomplete:  recursive rules can cause it to search forever. The order in
+// which facts and rules appear in the knowledge base can have a large
+// influence on the behavior of this inference procedure.
+//
+// Predicates may be selected, with the "table" method, for tabled
+// resolution. Goals using a tabled predicate are not resolved against facts
+// and rules directly. Instead, all of the answers to the goal are collected
+// in an AnswerTable, shared by every variant of the goal, and the goal is
+// matched against those answers. Tables are filled by repeated passes over
+// the facts and rules, until no new answers appear. A goal that depends on
+// its own table, directly or through other tables, sees the answers found
+// so far, and the group of mutually dependent tables is completed together,
+// so recursive rules, such as those for transitive closures, terminate
+// (provided the number of answers is finite), and no subgoal is solved
+// more than once.
+//
+// Variable bindings are kept in a BindingStore during inference, rather
+// than in binding lists that are copied at every step. Bindings made while
+// trying a fact or rule that does not work out are undone by unwinding the
+// store's trail to the mark taken before the attempt. Binding lists are
+// only built at the boundary, for the "unify" and "ask" methods that take
+// and return them. Unification itself is iterative, keeping the pairs of
+// terms still to be unified on an explicit stack that is reused from call
+// to call, so that it allocates no storage. The stack is cleared once each
+// unification is finished, so that it does not keep terms from being
+// reclaimed. The occurs check is skipped for ground terms, whose groundness
+// is remembered by each term. Since the stacks and the answer tables are
+// shared by every query, an object of this class must only be used by one
+// thread at a time.
 //
 // In order to use this inference engine, the knowledge base must be
 // initialized by a call to "initKB". Queries are then submitted using the
@@ -30,11 +59,28 @@
 
 
 import java.util.*;
+import java.util.stream.*;
 
 
 public class BackwardChain {
 
     public KnowledgeBase kb;
+	// Work stacks for unification, reused from call to call, so not to be
+	// shared between threads ...
+	Term[] unifyStack = new Term[64];
+	int unifyTop = 0;
+	int unifyHigh = 0;             // most slots used since last cleared
+	Term[] occursStack = new Term[64];
+	// Tabling: the tabled predicates, keyed by name and arity, the answer
+	// tables for their subgoals, keyed by variant, and the stack of
+	// incomplete tables ...
+	Set<String> tabledPredicates = new HashSet<String>();
+	Map<Literal, AnswerTable> tables = new HashMap<Literal, AnswerTable>();
+	List<AnswerTable> completionStack = new ArrayList<AnswerTable>();
+	List<AnswerTable> activeTables = new ArrayList<AnswerTable>();
+	int answerCount = 0;
+	int passCount = 0;
+	int tabledModification = -1;   // of the knowledge base
 
 	// Default constructor ...
 	public BackwardChain() {
@@ -50,125 +96,29 @@ public class BackwardChain {
 	// unify -- Return the most general unifier for the two provided literals,
 	// or null if no unification is possible. The returned binding list
 	// should be freshly allocated.
-	public BindingList unify(Literal lit1, Literal lit2, BindingList bl) 
-	{
-			
-			if (lit1.pred.equals(lit2.pred))//here we are comparing if the predicates are equal to one another
-			
-				return unify(lit1.args,lit2.args,bl);// if pred1 = pred2 then the literals may be unified 
-				
-				else//if pred1 and pred2 arent equal we cannot unify them...return null
-			
-			return null;
-			
-			
-		
-			
-		}
-
-		
+	public BindingList unify(Literal lit1, Literal lit2, BindingList bl) {
+		if (bl == null)
+			return (null);
+		BindingStore store = new BindingStore(bl);
+		return (unify(lit1, lit2, store) ? store.toBindingList() : null);
+	}
 
 	// unify -- Return the most general unifier for the two provided terms,
 	// or null if no unification is possible. The returned binding list
 	// should be freshly allocated.
-	public BindingList unify(Term t1, Term t2, BindingList bl)
-	{
-		
-		if(bl == null) //If the binding list is empty return null because a bl cant be created when null
-    		return null;
-    	
-    	//I received help writing the unification and binding procedure from https://www-users.cs.umn.edu/~gini/4511/unification.html this cite gave very helpful 
-		//information on how the unification algorithm works with a different combination of arguments
-		//
-		else if(t1.f != null && t2.c != null) //here we are comparing the first term (a function) with a second term (a constant) and this cannot be done
-    	{
-    		 return null;//cannot unify a function with a constant
-    	}
-		else if(t1.f != null && t2.v != null)
-		{
-			return unify(t2,t1,bl);// unify method is not allowed in Backward chain for arguments (variable,function,bl) so I left the .v and .f out
-		}
-		else if(t1.f != null && t2.f != null) 
-		{
-			return unify(t1.f,t2.f,bl);// unification of a function and a function
-		}
-		
-		
-		else if(t1.c != null && t2.c != null) 
-		{
-			if (t1.equals(t2)) //success if and only if 2 constants are the same, fail otherwise; if equal return new bl
-				
-			{
-			
-				return new BindingList();//we must create a new binding list if they are equal
-			}
-			else 
-			{
-			
-				return null;//null will be returned if these constants aren't the same
-			}
-		
-		}
-		
-		else if(t1.c != null && t2.v != null) 
-		{
-			return unify(t2,t1,bl);	//unify method is not allowed in Backward chain for arguments (variable,constant,bl) so I left the .v and .c subparts out
-		}
-		
-		else if(t1.c != null && t2.f != null) 
-		{
-			return null;// a function cannot be unified with a constant
-		}
-		
-		
-		else if(t1.v != null && t2.c != null) 
-		{
-			bl.addBinding(t1.v,t2);//method addBinding in the type BindingList is not applicable for arguments (variable,constant)& is not applicable for arguments (term,term) so I simply included t1.v and t2
-			//BindingList bl1 = new BindingList();
-			return new BindingList(bl);
-		}
-			
-		else if (t1.v != null && t2.v != null) 
-		{
-			bl.addBinding(t1.v,t2);//method addBinding in the type BindingList is not applicable for arguments (variable,variable) & is not applicable for arguments (term,term) so I simply included t1.v and t2
-			//BindingList bl1 = new BindingList();
-			return new BindingList(bl);
-			
-		}
-		else if (t1.v != null && t2.f != null)
-		{
-			if (!(t2.subst(bl).allVariables().contains(t1.v))) 
-															
-			{													//I had trouble writing this part of the code and requested help from my tutor Isaiah
-				bl.addBinding(t1.v,t2);							//Spearman on Varsitytutors.com He explained to me that our code is simply reading variables from other java files
-				return new BindingList(bl);						//files, and we are checking 
-																// to see if 'variable' occurs in the  binding list,
-																//if it does we must return null, if not we can bind these two together
-			}				
-			else 
-			{
-			
-				return null;
-			}
-		}
-		else 
-			return null;//if none of the terms can be unified to the first return null .. this is a safety net for all of the comparisons 
-			
+	public BindingList unify(Term t1, Term t2, BindingList bl) {
+		if (bl == null)
+			return (null);
+		BindingStore store = new BindingStore(bl);
+		return (unify(t1, t2, store) ? store.toBindingList() : null);
 	}
 
 	// unify -- Return the most general unifier for the two provided functions,
 	// or null if no unification is possible. The returned binding list
 	// should be freshly allocated.
 	public BindingList unify(Function f1, Function f2, BindingList bl) {
-
-		    {
-		    	if(f1.func.equals(f2.func)) //if the functions are equal then 
-		    		return unify(f1.args, f2.args, bl); //both terms can be unified with the binding list
-		    	else 
-		    		return null;//functions aren't equal so return null
-		    }
-		}
-	
+		return (unify(new Term(f1), new Term(f2), bl));
+	}
 
 	// unify -- Return the most general unifier for the two provided lists of
 	// terms, or null if no unification is possible. The returned binding
@@ -176,38 +126,154 @@ public class BackwardChain {
 	public BindingList unify(List<Term> ts1, List<Term> ts2, BindingList bl) {
 		if (bl == null)
 			return (null);
-		if ((ts1.size() == 0) && (ts2.size() == 0))
-			// Empty lists match other empty lists ...
-			return (new BindingList(bl));
-		if ((ts1.size() == 0) || (ts2.size() == 0))
-			// Ran out of arguments in one list before reaching the
-			// end of the other list, which means the two argument lists
-			// can't match ...
-			return (null);
-		List<Term> terms1 = new LinkedList<Term>();
-		List<Term> terms2 = new LinkedList<Term>();
-		terms1.addAll(ts1);
-		terms2.addAll(ts2);
-		Term t1 = terms1.get(0);
-		Term t2 = terms2.get(0);
-		terms1.remove(0);
-		terms2.remove(0);
-		return (unify(terms1, terms2, unify(t1, t2, bl)));
+		BindingStore store = new BindingStore(bl);
+		return (unify(ts1, ts2, store) ? store.toBindingList() : null);
 	}
 
-	// askFacts -- Examine all of the facts in the knowledge base to
-	// determine if any of them unify with the given literal, under the
+	// unify -- Unify the two provided literals, adding the bindings needed
+	// to the given store. Return false if no unification is possible, in
+	// which case the caller should undo any bindings made.
+	boolean unify(Literal lit1, Literal lit2, BindingStore store) {
+		return (lit1.pred.equals(lit2.pred) &&
+			unify(lit1.args, lit2.args, store));
+	}
+
+	// unify -- Unify the two provided lists of terms, adding the bindings
+	// needed to the given store. Return false if no unification is
+	// possible, in which case the caller should undo any bindings made.
+	boolean unify(List<Term> ts1, List<Term> ts2, BindingStore store) {
+		if (ts1.size() != ts2.size())
+			return (false);
+		unifyTop = 0;
+		pushArguments(ts1, ts2);
+		return (unifyPending(store));
+	}
+
+	// unify -- Unify the two provided terms, adding the bindings needed to
+	// the given store. Return false if no unification is possible, in
+	// which case the caller should undo any bindings made.
+	boolean unify(Term t1, Term t2, BindingStore store) {
+		unifyTop = 0;
+		pushPair(t1, t2);
+		return (unifyPending(store));
+	}
+
+	// unifyPending -- Unify each pair of terms on the unification stack,
+	// as with "unifyEach", and then clear the slots of the stack that were
+	// used. Return false if some pair does not unify.
+	boolean unifyPending(BindingStore store) {
+		boolean unified = unifyEach(store);
+		Arrays.fill(unifyStack, 0, unifyHigh, null);
+		unifyTop = 0;
+		unifyHigh = 0;
+		return (unified);
+	}
+
+	// unifyEach -- Unify each pair of terms on the unification stack,
+	// until the stack is empty. Function arguments are pushed onto the
+	// stack, rather than being handled by recursion, and no other storage
+	// is allocated. Return false as soon as a pair does not unify.
+	boolean unifyEach(BindingStore store) {
+		while (unifyTop > 0) {
+			Term t2 = store.deref(unifyStack[--unifyTop]);
+			Term t1 = store.deref(unifyStack[--unifyTop]);
+			if (t1 == t2)
+				continue;
+			if (t1.v != null) {
+				if (!(bindVariable(t1.v, t2, store)))
+					return (false);
+			} else if (t2.v != null) {
+				if (!(bindVariable(t2.v, t1, store)))
+					return (false);
+			} else if (t1.canonical && t2.canonical &&
+				   (t1.table == t2.table)) {
+				// Distinct canonical terms are never equal ...
+				return (false);
+			} else if (t1.c != null) {
+				// Constants only match identical constants ...
+				if ((t2.c == null) || !(t1.c.equals(t2.c)))
+					return (false);
+			} else if ((t1.f != null) && (t2.f != null)) {
+				if (!(t1.f.func.equals(t2.f.func)) ||
+				    (t1.f.args.size() != t2.f.args.size()))
+					return (false);
+				pushArguments(t1.f.args, t2.f.args);
+			} else {
+				return (false);
+			}
+		}
+		return (true);
+	}
+
+	// pushArguments -- Push the corresponding pairs of terms from the two
+	// given lists, which must be the same length, onto the unification
+	// stack, so that the first pair is on top.
+	void pushArguments(List<Term> ts1, List<Term> ts2) {
+		for (int i = ts1.size() - 1; i >= 0; i--)
+			pushPair(ts1.get(i), ts2.get(i));
+	}
+
+	// pushPair -- Push the given pair of terms onto the unification stack.
+	void pushPair(Term t1, Term t2) {
+		if (unifyTop + 2 > unifyStack.length)
+			unifyStack = Arrays.copyOf(unifyStack, 2 * unifyStack.length);
+		unifyStack[unifyTop++] = t1;
+		unifyStack[unifyTop++] = t2;
+		if (unifyTop > unifyHigh)
+			unifyHigh = unifyTop;
+	}
+
+	// bindVariable -- Bind the given unbound variable to the given
+	// dereferenced term in the given store, unless the variable occurs in
+	// the term. Return false if it does.
+	boolean bindVariable(Variable var, Term t, BindingStore store) {
+		if (t.v != null) {
+			if (!(var.equals(t.v)))
+				store.bind(var, t);
+			return (true);
+		}
+		if (!(t.isGround()) && occurs(var, t, store))
+			return (false);
+		store.bind(var, t);
+		return (true);
+	}
+
+	// occurs -- Return true if and only if the given variable appears in
+	// the given term, under the bindings in the given store. Ground
+	// subterms are skipped, and the subterms still to be examined are kept
+	// on a stack of their own, which is cleared before returning.
+	boolean occurs(Variable var, Term t, BindingStore store) {
+		int top = 0;
+		int high = 1;
+		boolean found = false;
+		occursStack[top++] = t;
+		while ((top > 0) && !found) {
+			t = store.deref(occursStack[--top]);
+			if (t.v != null) {
+				found = t.v.equals(var);
+			} else if ((t.f != null) && !(t.isGround())) {
+				int n = t.f.args.size();
+				if (top + n > occursStack.length)
+					occursStack = Arrays.copyOf(occursStack,
+								    2 * (top + n));
+				for (int i = n - 1; i >= 0; i--)
+					occursStack[top++] = t.f.args.get(i);
+				high = Math.max(high, top);
+			}
+		}
+		Arrays.fill(occursStack, 0, high, null);
+		return (found);
+	}
+
+	// askFacts -- Examine the facts in the knowledge base that might unify
+	// with the given literal, according to the knowledge base's fact
+	// indexes, to determine if any of them unify with it, under the
 	// given binding list. If a unification is found, return the
 	// corresponding most general unifier. If none is found, return null
 	// to indicate failure.
 	BindingList askFacts(Literal lit, BindingList bl) {
-		BindingList mgu = null; // Most General Unifier
-		for (Literal fact : kb.facts) {
-			mgu = unify(lit, fact, bl);
-			if (mgu != null)
-				return (mgu);
-		}
-		return (null);
+		BindingStore store = new BindingStore(bl);
+		return (askFacts(lit, store) ? store.toBindingList() : null);
 	}
 
 	// askFacts -- Examine all of the facts in the knowledge base to
@@ -218,6 +284,20 @@ public class BackwardChain {
 		return (askFacts(lit, new BindingList()));
 	}
 
+	// askFacts -- Search for a fact that unifies with the given literal,
+	// under the bindings in the given store. If one is found, leave the
+	// bindings of the unifier in the store and return true. Otherwise,
+	// leave the store as it was and return false.
+	boolean askFacts(Literal lit, BindingStore store) {
+		int mark = store.mark();
+		for (Literal fact : kb.candidateFacts(lit, store)) {
+			if (unify(lit, fact, store))
+				return (true);
+			store.undo(mark);
+		}
+		return (false);
+	}
+
 	// ask -- Try to prove the given goal literal, under the constraints of
 	// the given binding list, using both the list of known facts and the
 	// collection of known rules. Terminate as soon as a proof is found,
@@ -225,34 +305,7 @@ public class BackwardChain {
 	// no proof can be found. The returned binding list should be freshly
 	// allocated.
 	BindingList ask(Literal goal, BindingList bl) {
-		BindingList result = askFacts(goal, bl);
-		if (result != null) {
-			// The literal can be unified with a known fact ...
-			return (result);
-		}
-		// Need to look at rules ...
-		for (Rule candidateRule : kb.rules) {
-			if (candidateRule.consequent.pred.equals(goal.pred)) {
-				// The rule head uses the same predicate as the goal ...
-				// Standardize apart ...
-				Rule r = candidateRule.standardizeApart();
-				// Check to see if the consequent unifies with the goal ...
-				result = unify(goal, r.consequent, bl);
-				if (result != null) {
-					// This rule might be part of a proof, if we can prove
-					// the rule's antecedents ...
-					result = ask(r.antecedents, result);
-					if (result != null) {
-						// The antecedents have been proven, so the goal
-						// is proven ...
-						return (result);
-					}
-				}
-			}
-		}
-		// No rule that matches has antecedents that can be proven. Thus,
-		// the search fails ...
-		return (null);
+		return (ask(Collections.singletonList(goal), bl));
 	}
 
 	// ask -- Try to prove the given goal literal using both the list of
@@ -271,22 +324,152 @@ public class BackwardChain {
 	// null if no proof can be found. The returned binding list should be
 	// freshly allocated.
 	BindingList ask(List<Literal> goals, BindingList bl) {
-		if (goals.size() == 0) {
-			// All goals have been satisfied ...
-			return (bl);
-		} else {
-			List<Literal> newGoals = new LinkedList<Literal>();
-			newGoals.addAll(goals);
-			Literal goal = newGoals.get(0);
-			newGoals.remove(0);
-			BindingList firstBL = ask(goal, bl);
-			if (firstBL == null) {
-				// Failure to prove one of the goals ...
-				return (null);
-			} else {
-				// Try to prove the remaining goals ...
-				return (ask(newGoals, firstBL));
+		Iterator<BindingList> proofs = answers(goals, bl);
+		return (proofs.hasNext() ? proofs.next() : null);
+	}
+
+	// answers -- Return an iterator over every answer to the given list of
+	// goal literals, under the constraints of the given binding list, in
+	// the order in which a depth-first search finds them. Each answer is
+	// found only when it is requested.
+	public Iterator<BindingList> answers(List<Literal> goals,
+					    BindingList bl) {
+		return (new ProofIterator(this, goals, bl));
+	}
+
+	// answers -- Return an iterator over every answer to the given goal
+	// literal, as above.
+	public Iterator<BindingList> answers(Literal goal) {
+		return (answers(Collections.singletonList(goal),
+				new BindingList()));
+	}
+
+	// askAll -- Return a stream of every answer to the given goal literal,
+	// found lazily, so that taking the first few answers does not search
+	// for the rest.
+	public Stream<BindingList> askAll(Literal goal) {
+		Spliterator<BindingList> answerSource
+			= Spliterators.spliteratorUnknownSize(answers(goal),
+				Spliterator.ORDERED | Spliterator.NONNULL);
+		return (StreamSupport.stream(answerSource, false));
+	}
+
+	// table -- Use tabled resolution for goals with the given predicate
+	// name and arity.
+	public void table(String predicate, int arity) {
+		tabledPredicates.add(predicate + "/" + arity);
+		clearTables();
+	}
+
+	// clearTables -- Discard every answer table, so that tabled goals are
+	// evaluated afresh.
+	public void clearTables() {
+		tables.clear();
+		completionStack.clear();
+		activeTables.clear();
+	}
+
+	// isTabled -- Return true if and only if tabled resolution is used for
+	// the given goal.
+	boolean isTabled(Literal goal) {
+		return (!(tabledPredicates.isEmpty()) &&
+			tabledPredicates.contains(KnowledgeBase.predicateKey(goal)));
+	}
+
+	// answerTable -- Return the answer table for the variant of the given
+	// goal, under the bindings in the given store, evaluating the table
+	// first if it is not complete. If the table is being evaluated already,
+	// because the goal depends on itself, it is returned as it is, and the
+	// table that depends on it will be evaluated again until no new
+	// answers appear.
+	AnswerTable answerTable(Literal goal, BindingStore store) {
+		if (tabledModification != kb.getModificationCount()) {
+			// The knowledge base has changed ...
+			clearTables();
+			tabledModification = kb.getModificationCount();
+		}
+		Literal key = AnswerTable.variant(store.resolve(goal));
+		AnswerTable t = tables.get(key);
+		if (t == null) {
+			t = new AnswerTable(key, kb.groundTerms);
+			tables.put(key, t);
+		}
+		AnswerTable caller = activeTables.isEmpty() ? null
+			: activeTables.get(activeTables.size() - 1);
+		if (!(t.complete) && !(t.active) &&
+		    ((caller == null) || (t.evaluatedAt < caller.passStart)))
+			// Evaluate the table, unless it has already been evaluated
+			// during the caller's current pass ...
+			evaluate(t);
+		if (!(t.complete) && (caller != null)) {
+			// The table being evaluated depends on an incomplete table ...
+			caller.consultedIncomplete = true;
+			caller.lowLink = Math.min(caller.lowLink,
+						  t.active ? t.position : t.lowLink);
+		}
+		return (t);
+	}
+
+	// evaluate -- Find answers for the subgoal of the given table, using
+	// the facts and rules in the knowledge base. If the answers depend on
+	// no incomplete table that was being evaluated before this one, then
+	// this table leads a group of mutually dependent tables, and passes
+	// are made until no table gains a new answer, after which this table,
+	// and every table evaluated since, is complete. Otherwise, only one
+	// pass is made, and the table will be evaluated again during the next
+	// pass of the evaluation of that earlier table.
+	void evaluate(AnswerTable t) {
+		if (t.position < 0) {
+			t.position = completionStack.size();
+			completionStack.add(t);
+		}
+		t.active = true;
+		activeTables.add(t);
+		t.lowLink = t.position;
+		int before;
+		do {
+			before = answerCount;
+			t.consultedIncomplete = false;
+			t.passStart = ++passCount;
+			t.evaluatedAt = t.passStart;
+			deriveAnswers(t);
+		} while (t.consultedIncomplete && (t.lowLink >= t.position) &&
+			 (answerCount != before));
+		activeTables.remove(activeTables.size() - 1);
+		t.active = false;
+		if (t.lowLink >= t.position) {
+			// This table leads a group of tables that are now complete ...
+			int leader = t.position;
+			while (completionStack.size() > leader) {
+				AnswerTable done
+					= completionStack.remove(completionStack.size() - 1);
+				done.complete = true;
+				done.position = -1;
+			}
+		}
+	}
+
+	// deriveAnswers -- Add to the given table every instance of its
+	// subgoal that follows from one fact, or from one rule whose
+	// antecedents are proven, in a single pass.
+	void deriveAnswers(AnswerTable t) {
+		BindingStore store = new BindingStore();
+		Literal goal = t.goal;
+		for (Literal fact : kb.candidateFacts(goal, store)) {
+			if (unify(goal, fact, store) && t.addAnswer(store.resolve(goal)))
+				answerCount++;
+			store.undo(0);
+		}
+		for (Rule candidateRule : kb.candidateRules(goal)) {
+			Rule r = candidateRule.standardizeApart();
+			if (unify(goal, r.consequent, store)) {
+				ProofIterator body
+					= new ProofIterator(this, r.antecedents, store);
+				while (body.advance())
+					if (t.addAnswer(store.resolve(goal)))
+						answerCount++;
 			}
+			store.undo(0);
 		}
 	}
 
@@ -0,0 +1,179 @@
+//
+// BindingStore
+//
+// This class implements a mutable store of variable bindings, in the style
+// of the Warren Abstract Machine, as an alternative to copying binding
+// lists.  Each bound variable has a slot in an array, found by hashing the
+// identifier of the variable's name in the symbol table, holding its symbol
+// table entry and its bound value.  (Fresh variables are made for every use
+// of a rule, so the identifiers themselves grow without bound and are not
+// used as indexes.)
+// Every binding made is recorded on a "trail", so a proof procedure can
+// note the height of the trail (a "mark") before trying an alternative,
+// and then undo all of the bindings made since that mark when the
+// alternative fails.  Finding the value of a variable takes expected
+// constant time for each link in a chain of variables bound to variables.
+// Binding stores can be initialized from binding lists, and the current
+// bindings can be extracted as a binding list.
+//
+
+
+import java.util.*;
+
+
+public class BindingStore {
+
+    Symbol.Entry[] keys;   // entry of the variable in each slot, or null
+    Term[] value;      // bound value of the variable in each slot
+    int[] trail;       // slots of the bindings, in the order made
+    int trailSize = 0;
+
+    // Default constructor ...
+    public BindingStore() {
+	this.keys = new Symbol.Entry[64];
+	this.value = new Term[64];
+	this.trail = new int[32];
+	this.trailSize = 0;
+    }
+
+    // Constructor with initial bindings specified ...
+    public BindingStore(BindingList bl) {
+	this();
+	load(bl);
+    }
+
+    // load -- Add the bindings in the given binding list to this store.
+    // As with "BindingList.boundValue", the first binding of a variable is
+    // the one that counts.
+    public void load(BindingList bl) {
+	for (Binding b : bl.pairs)
+	    if (boundValue(b.var) == null)
+		bind(b.var, b.val);
+    }
+
+    // mark -- Return the current height of the trail, for later use with
+    // "undo".
+    public int mark() {
+	return (trailSize);
+    }
+
+    // undo -- Remove every binding made since the given mark was taken.
+    // Bindings are removed in the reverse of the order in which they were
+    // made, so no later binding can have been placed in a slot after the
+    // one being emptied, and the slot can simply be cleared.
+    public void undo(int mark) {
+	while (trailSize > mark) {
+	    int slot = trail[--trailSize];
+	    keys[slot] = null;
+	    value[slot] = null;
+	}
+    }
+
+    // bind -- Bind the given unbound variable to the given value, recording
+    // the binding on the trail.
+    public void bind(Variable var, Term val) {
+	if (2 * (trailSize + 1) > keys.length)
+	    rehash(2 * keys.length);
+	Symbol.Entry key = var.entry();
+	int slot = slotOf(key);
+	keys[slot] = key;
+	value[slot] = val;
+	trail[trailSize++] = slot;
+    }
+
+    // boundValue -- Return the value to which the given variable is
+    // directly bound, or null if it is unbound.
+    public Term boundValue(Variable var) {
+	Symbol.Entry key = var.entry();
+	int slot = slotOf(key);
+	return ((keys[slot] == key) ? value[slot] : null);
+    }
+
+    // slotOf -- Return the slot holding the variable with the given
+    // symbol table entry, or the empty slot where it would be placed.
+    int slotOf(Symbol.Entry key) {
+	int mask = keys.length - 1;
+	int h = key.id * 0x9e3779b9;
+	int slot = (h ^ (h >>> 16)) & mask;
+	while ((keys[slot] != null) && (keys[slot] != key))
+	    slot = (slot + 1) & mask;
+	return (slot);
+    }
+
+    // rehash -- Move the bindings into arrays of the given size, which
+    // must be a power of two, in the order in which they were made.
+    void rehash(int size) {
+	Symbol.Entry[] oldKeys = keys;
+	Term[] oldValue = value;
+	keys = new Symbol.Entry[size];
+	value = new Term[size];
+	trail = Arrays.copyOf(trail, size / 2);
+	for (int i = 0; i < trailSize; i++) {
+	    int oldSlot = trail[i];
+	    int slot = slotOf(oldKeys[oldSlot]);
+	    keys[slot] = oldKeys[oldSlot];
+	    value[slot] = oldValue[oldSlot];
+	    trail[i] = slot;
+	}
+    }
+
+    // deref -- Follow the chain of bindings starting at the given term,
+    // returning the first term that is not a bound variable.
+    public Term deref(Term t) {
+	while (t.v != null) {
+	    Term val = boundValue(t.v);
+	    if (val == null)
+		break;
+	    t = val;
+	}
+	return (t);
+    }
+
+    // resolve -- Return the result of applying the bindings in this store
+    // to the given term.  Parts of the term that contain no bound variables
+    // are shared rather than copied.
+    public Term resolve(Term t) {
+	t = deref(t);
+	if ((t.f == null) || t.isGround())
+	    return (t);
+	Function result = null;
+	for (int i = 0; i < t.f.args.size(); i++) {
+	    Term arg = t.f.args.get(i);
+	    Term newArg = resolve(arg);
+	    if ((newArg != arg) && (result == null)) {
+		// Copy the function invocation, now that it has changed ...
+		result = new Function();
+		result.func = t.f.func;
+		result.args.addAll(t.f.args.subList(0, i));
+	    }
+	    if (result != null)
+		result.args.add(newArg);
+	}
+	return ((result == null) ? t : new Term(result));
+    }
+
+    // resolve -- Return the result of applying the bindings in this store
+    // to the given literal.
+    public Literal resolve(Literal lit) {
+	Literal result = new Literal();
+	result.pred = lit.pred;
+	for (Term arg : lit.args)
+	    result.args.add(resolve(arg));
+	return (result);
+    }
+
+    // toBindingList -- Return a new binding list holding the current
+    // bindings, in the order in which they were made, with the bindings
+    // applied to each value.
+    public BindingList toBindingList() {
+	BindingList bl = new BindingList();
+	for (int i = 0; i < trailSize; i++) {
+	    int slot = trail[i];
+	    bl.addBinding(new Variable(keys[slot].name),
+			  resolve(value[slot]));
+	}
+	return (bl);
+    }
+
+
+}
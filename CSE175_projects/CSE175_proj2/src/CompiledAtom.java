@@ -0,0 +1,47 @@
+//
+// CompiledAtom
+//
+// This class implements a literal from a rule, compiled for matching
+// against facts.  Each argument is either a constant, given in canonical
+// form, or a variable, given by its number among the variables of the
+// rule, so that the values of the variables can be kept in an array.
+//
+
+
+import java.lang.ref.*;
+import java.util.*;
+
+
+class CompiledAtom {
+    Predicate pred;
+    String relation;         // predicate and arity
+    Term[] constant;         // for each argument, a constant, or null
+    int[] slot;              // for each argument, a variable number, or -1
+
+    // Constructor with literal, variable numbering, and table of canonical
+    // ground terms specified.  Variables that have not yet been numbered
+    // are given new numbers ...
+    public CompiledAtom(Literal lit, Map<Variable, Integer> slots,
+			Map<Term, WeakReference<Term>> groundTerms) {
+	int n = lit.args.size();
+	this.pred = lit.pred;
+	this.relation = KnowledgeBase.predicateKey(lit);
+	this.constant = new Term[n];
+	this.slot = new int[n];
+	for (int i = 0; i < n; i++) {
+	    Term arg = lit.args.get(i);
+	    if (arg.v != null) {
+		Integer s = slots.get(arg.v);
+		if (s == null) {
+		    s = slots.size();
+		    slots.put(arg.v, s);
+		}
+		slot[i] = s;
+	    } else {
+		constant[i] = arg.intern(groundTerms);
+		slot[i] = -1;
+	    }
+	}
+    }
+
+}
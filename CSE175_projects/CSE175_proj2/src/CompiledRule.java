@@ -0,0 +1,36 @@
+//
+// CompiledRule
+//
+// This class implements a function-free rule, compiled for bottom-up
+// inference, with its antecedents and consequent compiled into CompiledAtom
+// objects and a JoinPlan for each antecedent.  The variables of the rule
+// are numbered in order of appearance.
+//
+
+
+import java.lang.ref.*;
+import java.util.*;
+
+
+class CompiledRule {
+    CompiledAtom head;
+    CompiledAtom[] body;
+    JoinPlan[] plans;        // by delta antecedent
+    int variables;
+
+    // Constructor with rule and table of canonical ground terms
+    // specified ...
+    public CompiledRule(Rule r, Map<Term, WeakReference<Term>> groundTerms) {
+	Map<Variable, Integer> slots = new HashMap<Variable, Integer>();
+	this.body = new CompiledAtom[r.antecedents.size()];
+	for (int i = 0; i < body.length; i++)
+	    body[i] = new CompiledAtom(r.antecedents.get(i), slots,
+				       groundTerms);
+	this.head = new CompiledAtom(r.consequent, slots, groundTerms);
+	this.variables = slots.size();
+	this.plans = new JoinPlan[body.length];
+	for (int i = 0; i < body.length; i++)
+	    plans[i] = new JoinPlan(body, i, variables);
+    }
+
+}
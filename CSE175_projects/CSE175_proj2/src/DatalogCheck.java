@@ -0,0 +1,145 @@
+//
+// DatalogCheck
+//
+// This class provides a "main" method that checks the forward chaining
+// engines against cases that they have gotten wrong in the past.  Each case
+// is a small knowledge base, given as lines of facts and rules in the usual
+// file formats, along with a query and the number of facts that should
+// match it.  The query is answered by the DatalogEngine, by the
+// ReteNetwork, and by backward chaining, and any disagreement is reported.
+// The exit status is nonzero if some case fails.
+//
+
+
+import java.util.*;
+
+
+public class DatalogCheck {
+
+    // Cases, as facts, rules, query, and expected number of answers ...
+    static String[][] cases = {
+	// A variable repeated within one antecedent must not be looked up
+	// in an index as though an earlier antecedent had bound it ...
+	{ "(P0 a) (Q b b)",
+	  "(DEFRULE Base (P0 ?x) => (P ?x))\n" +
+	  "(DEFRULE Repeat (P ?x) (Q ?y ?y) => (R ?x ?y))",
+	  "(R ?a ?b)", "1" },
+    };
+
+    // knowledgeBase -- Return a knowledge base holding the given facts and
+    // rules, or null on error.
+    static KnowledgeBase knowledgeBase(String facts, String rules) {
+	KnowledgeBase kb = new KnowledgeBase();
+	Scanner factScanner = new Scanner(facts);
+	while (factScanner.hasNext()) {
+	    Literal fact = new Literal();
+	    if (!(fact.read(factScanner)))
+		return (null);
+	    kb.addFact(fact);
+	}
+	Scanner ruleScanner = new Scanner(rules);
+	while (ruleScanner.hasNext()) {
+	    Rule r = new Rule();
+	    if (!(r.read(ruleScanner)))
+		return (null);
+	    kb.addRule(r);
+	}
+	return (kb);
+    }
+
+    // check -- Run the given case, reporting the number of answers found by
+    // each engine.  Return false if some engine gets it wrong.
+    static boolean check(String[] c) {
+	KnowledgeBase kb = knowledgeBase(c[0], c[1]);
+	Literal query = new Literal();
+	if ((kb == null) || !(query.read(new Scanner(c[2])))) {
+	    System.out.println("Error:  Unable to read case " + c[2]);
+	    return (false);
+	}
+	int expected = Integer.parseInt(c[3]);
+	List<Literal> datalog = new DatalogEngine(kb).lookup(query);
+	ReteNetwork rete = new ReteNetwork(kb);
+	List<Literal> network = rete.build() ? rete.lookup(query) : null;
+	BackwardChain engine = new BackwardChain();
+	engine.kb = kb;
+	long proofs = engine.askAll(query).count();
+	boolean ok = (datalog != null) && (datalog.size() == expected) &&
+	    (network != null) && (network.size() == expected) &&
+	    (proofs == expected);
+	System.out.printf("%s %s: datalog %s, rete %s, backward %d, " +
+			  "expected %d\n", ok ? "PASS" : "FAIL", c[2],
+			  (datalog == null) ? "none" : datalog.size(),
+			  (network == null) ? "none" : network.size(),
+			  proofs, expected);
+	return (ok);
+    }
+
+    // checkQueryConstants -- Ask many queries with constants that appear in
+    // no fact, and make sure that they are not added to the knowledge
+    // base's table of canonical ground terms.  Return false if the table
+    // grows or if some query is answered.
+    static boolean checkQueryConstants() {
+	KnowledgeBase kb
+	    = knowledgeBase("(P a b) (P b c)",
+			    "(DEFRULE Step (P ?x ?y) => (Q ?x ?y))");
+	DatalogEngine engine = new DatalogEngine(kb);
+	int before = -1;
+	int answers = 0;
+	for (int i = 0; i < 1000; i++) {
+	    Literal query = new Literal();
+	    query.read(new Scanner("(Q a (F k" + i + "))"));
+	    List<Literal> found = engine.lookup(query);
+	    answers += (found == null) ? 1 : found.size();
+	    if (before < 0)
+		before = kb.groundTerms.size();
+	}
+	int after = kb.groundTerms.size();
+	boolean ok = (answers == 0) && (after == before);
+	System.out.printf("%s query constants: %d answers, %d ground terms " +
+			  "before, %d after\n", ok ? "PASS" : "FAIL", answers,
+			  before, after);
+	return (ok);
+    }
+
+    // checkRemovedTerms -- Add many facts with distinct constants to a
+    // knowledge base and remove them again, and make sure that their terms
+    // are dropped from the table of canonical ground terms once they have
+    // been collected.  Return false if the table keeps them.
+    static boolean checkRemovedTerms() {
+	KnowledgeBase kb = knowledgeBase("(P a b)", "");
+	int before = kb.groundTerms.size();
+	for (int i = 0; i < 1000; i++) {
+	    Literal fact = new Literal();
+	    fact.read(new Scanner("(P a (F k" + i + "))"));
+	    kb.addFact(fact);
+	}
+	int added = kb.groundTerms.size();
+	for (int i = 0; i < 1000; i++) {
+	    Literal fact = new Literal();
+	    fact.read(new Scanner("(P a (F k" + i + "))"));
+	    kb.removeFact(fact);
+	}
+	int after = kb.groundTerms.size();
+	for (int tries = 0; (tries < 20) && (after > before); tries++) {
+	    System.gc();
+	    after = kb.groundTerms.size();
+	}
+	boolean ok = (after == before);
+	System.out.printf("%s removed terms: %d ground terms before, %d " +
+			  "with facts added, %d after removal\n",
+			  ok ? "PASS" : "FAIL", before, added, after);
+	return (ok);
+    }
+
+    public static void main(String[] args) {
+	boolean ok = checkQueryConstants();
+	if (!(checkRemovedTerms()))
+	    ok = false;
+	for (String[] c : cases)
+	    if (!(check(c)))
+		ok = false;
+	if (!ok)
+	    System.exit(1);
+    }
+
+}
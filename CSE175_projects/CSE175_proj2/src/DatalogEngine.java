@@ -0,0 +1,336 @@
+//
+// DatalogEngine
+//
+// This class implements bottom-up (forward) inference for knowledge bases
+// whose rules are function-free, in the manner of a Datalog system.  Every
+// fact that can be derived from the facts and rules of the knowledge base is
+// found, once, and stored in a relation for its predicate and arity, after
+// which queries are answered by looking up matching facts rather than by
+// searching for proofs.  Derivation uses semi-naive evaluation:  on each
+// round, a rule is only applied to combinations of facts that include at
+// least one fact found on the previous round (the "delta"), so no
+// combination of facts is considered on more than one round.  Each rule is
+// compiled, once for each antecedent that may take its facts from the
+// delta, into a plan for a left-deep join.  That antecedent is scanned, and
+// the facts matching each later antecedent are found by probing a hash
+// index on the arguments already bound, built on demand for the relation.
+// Rules must be function-free, and every variable in a rule's consequent
+// must appear among its antecedents; facts may contain any ground terms.
+// Only the first 31 arguments of a literal are indexed.  The facts are
+// derived again whenever the facts or rules of the knowledge base have
+// changed.
+//
+
+
+import java.util.*;
+
+
+// Relation -- The facts known for one predicate and arity, with hash
+// indexes on subsets of their arguments.
+class Relation {
+    List<Literal> tuples;        // facts from previous rounds
+    Set<Literal> known;          // every fact, including "pending"
+    List<Literal> delta;         // facts from the last round
+    List<Literal> pending;       // facts found during this round
+    // Indexes, by bit mask of the indexed argument positions ...
+    Map<Integer, Map<List<Term>, List<Literal>>> indexes;
+
+    // Default constructor ...
+    public Relation() {
+	this.tuples = new ArrayList<Literal>();
+	this.known = new HashSet<Literal>();
+	this.delta = new ArrayList<Literal>();
+	this.pending = new ArrayList<Literal>();
+	this.indexes = new HashMap<Integer, Map<List<Term>, List<Literal>>>();
+    }
+
+    // propose -- Record the given ground fact, with canonical arguments,
+    // as found during this round, unless it is already known.  Return true
+    // if it is new.
+    public boolean propose(Literal fact) {
+	if (!(known.add(fact)))
+	    return (false);
+	pending.add(fact);
+	return (true);
+    }
+
+    // advance -- End the current round, making the facts found during it
+    // the new delta.  Return true if there were any.
+    public boolean advance() {
+	delta = pending;
+	pending = new ArrayList<Literal>();
+	for (Literal fact : delta) {
+	    tuples.add(fact);
+	    for (Map.Entry<Integer, Map<List<Term>, List<Literal>>> e
+		     : indexes.entrySet())
+		addToIndex(e.getValue(), e.getKey(), fact);
+	}
+	return (!(delta.isEmpty()));
+    }
+
+    // lookup -- Return the facts from previous rounds whose arguments, at
+    // the positions in the given mask, are those in the given key.
+    public List<Literal> lookup(int mask, List<Term> key) {
+	if (mask == 0)
+	    return (tuples);
+	Map<List<Term>, List<Literal>> index = indexes.get(mask);
+	if (index == null) {
+	    index = new HashMap<List<Term>, List<Literal>>();
+	    for (Literal fact : tuples)
+		addToIndex(index, mask, fact);
+	    indexes.put(mask, index);
+	}
+	List<Literal> entry = index.get(key);
+	if (entry == null)
+	    return (Collections.<Literal>emptyList());
+	return (entry);
+    }
+
+    // addToIndex -- Add the given fact to the given index on the argument
+    // positions in the given mask.
+    static void addToIndex(Map<List<Term>, List<Literal>> index, int mask,
+			   Literal fact) {
+	List<Term> key = new ArrayList<Term>();
+	for (int i = 0; i < fact.args.size(); i++)
+	    if ((mask & (1 << i)) != 0)
+		key.add(fact.args.get(i));
+	List<Literal> entry = index.get(key);
+	if (entry == null) {
+	    entry = new ArrayList<Literal>();
+	    index.put(key, entry);
+	}
+	entry.add(fact);
+    }
+
+}
+
+
+public class DatalogEngine {
+
+    public KnowledgeBase kb;
+    Map<String, Relation> relations;
+    List<CompiledRule> compiled;
+    int materialized = -1;   // modification count of the knowledge base
+    public int roundCount = 0;
+    public int derivedCount = 0;
+
+    // Constructor with knowledge base specified ...
+    public DatalogEngine(KnowledgeBase kb) {
+	this.kb = kb;
+	this.relations = new HashMap<String, Relation>();
+	this.compiled = new ArrayList<CompiledRule>();
+    }
+
+    // isFunctionFree -- Return true if and only if the given rule has no
+    // function terms, and every variable in its consequent appears among
+    // its antecedents.
+    static boolean isFunctionFree(Rule r) {
+	Set<Variable> bodyVars = new HashSet<Variable>();
+	for (Literal ante : r.antecedents) {
+	    for (Term arg : ante.args)
+		if (arg.f != null)
+		    return (false);
+	    bodyVars.addAll(ante.allVariables());
+	}
+	for (Term arg : r.consequent.args)
+	    if (arg.f != null)
+		return (false);
+	return (bodyVars.containsAll(r.consequent.allVariables()));
+    }
+
+    // materialize -- Derive every fact that follows from the knowledge
+    // base.  Return false, deriving nothing, if some rule is not
+    // function-free.
+    public boolean materialize() {
+	relations.clear();
+	compiled.clear();
+	roundCount = 0;
+	derivedCount = 0;
+	materialized = kb.getModificationCount();
+	for (Rule r : kb.rules) {
+	    if (!(isFunctionFree(r))) {
+		compiled.clear();
+		materialized = -1;
+		return (false);
+	    }
+	    compiled.add(new CompiledRule(r, kb.groundTerms));
+	}
+	// Every known fact forms the first delta ...
+	for (Literal fact : kb.facts) {
+	    Literal copy = new Literal();
+	    copy.pred = fact.pred;
+	    copy.args.addAll(fact.args);
+	    copy.internTerms(kb.groundTerms);
+	    relation(KnowledgeBase.predicateKey(copy)).propose(copy);
+	}
+	// Rules without antecedents have ground consequents ...
+	for (CompiledRule r : compiled)
+	    if (r.body.length == 0)
+		join(r, null, 0, new Term[0]);
+	boolean changed = advanceAll();
+	while (changed) {
+	    roundCount++;
+	    for (CompiledRule r : compiled) {
+		for (int i = 0; i < r.body.length; i++) {
+		    Relation first = relations.get(r.body[i].relation);
+		    if ((first != null) && !(first.delta.isEmpty()))
+			join(r, r.plans[i], 0, new Term[r.variables]);
+		}
+	    }
+	    changed = advanceAll();
+	}
+	return (true);
+    }
+
+    // relation -- Return the relation with the given key, creating it if
+    // necessary.
+    Relation relation(String key) {
+	Relation rel = relations.get(key);
+	if (rel == null) {
+	    rel = new Relation();
+	    relations.put(key, rel);
+	}
+	return (rel);
+    }
+
+    // advanceAll -- End the current round for every relation.  Return true
+    // if any new facts were found.
+    boolean advanceAll() {
+	boolean changed = false;
+	for (Relation rel : relations.values())
+	    if (rel.advance())
+		changed = true;
+	return (changed);
+    }
+
+    // join -- Match the antecedents of the given rule, from the given step
+    // of the given plan onward, against the known facts, under the variable
+    // values in the given array, proposing the consequent for each
+    // complete match.
+    void join(CompiledRule r, JoinPlan plan, int step, Term[] values) {
+	if (step == r.body.length) {
+	    Literal fact = new Literal();
+	    fact.pred = r.head.pred;
+	    for (int i = 0; i < r.head.slot.length; i++)
+		fact.args.add((r.head.slot[i] < 0) ? r.head.constant[i]
+			      : values[r.head.slot[i]]);
+	    if (relation(r.head.relation).propose(fact))
+		derivedCount++;
+	    return;
+	}
+	CompiledAtom a = r.body[plan.order[step]];
+	Relation rel = relations.get(a.relation);
+	if (rel == null)
+	    return;
+	List<Literal> candidates;
+	if (step == 0) {
+	    candidates = rel.delta;
+	} else {
+	    List<Term> key = new ArrayList<Term>();
+	    for (int i = 0; i < a.slot.length; i++)
+		if ((plan.mask[step] & (1 << i)) != 0)
+		    key.add((a.slot[i] < 0) ? a.constant[i]
+			    : values[a.slot[i]]);
+	    candidates = rel.lookup(plan.mask[step], key);
+	}
+	boolean[] binds = plan.binds[step];
+	for (Literal fact : candidates) {
+	    boolean matched = true;
+	    for (int i = 0; matched && (i < a.slot.length); i++) {
+		Term arg = fact.args.get(i);
+		if (binds[i])
+		    values[a.slot[i]] = arg;
+		else
+		    matched = arg.equals((a.slot[i] < 0) ? a.constant[i]
+					 : values[a.slot[i]]);
+	    }
+	    if (matched)
+		join(r, plan, step + 1, values);
+	}
+    }
+
+    // lookup -- Return the derived facts that match the given goal,
+    // deriving the facts first if the knowledge base has changed.  Return
+    // null if the facts cannot be derived.
+    public List<Literal> lookup(Literal goal) {
+	if (materialized != kb.getModificationCount())
+	    if (!(materialize()))
+		return (null);
+	List<Literal> found = new ArrayList<Literal>();
+	Relation rel = relations.get(KnowledgeBase.predicateKey(goal));
+	if (rel == null)
+	    return (found);
+	// Probe the index on the ground arguments of the goal.  Every
+	// argument of a derived fact is canonical, so a ground argument with
+	// no canonical copy matches no fact, and the goal's terms are not
+	// added to the table ...
+	int mask = 0;
+	List<Term> key = new ArrayList<Term>();
+	for (int i = 0; i < goal.args.size(); i++) {
+	    Term arg = goal.args.get(i);
+	    if ((i < 31) && arg.isGround()) {
+		Term shared = arg.find(kb.groundTerms);
+		if (shared == null)
+		    return (found);
+		mask |= (1 << i);
+		key.add(shared);
+	    }
+	}
+	for (Literal fact : rel.lookup(mask, key))
+	    if (matches(goal, fact))
+		found.add(fact);
+	return (found);
+    }
+
+    // answers -- Return a binding list for the variables of the given goal
+    // for each derived fact that matches it.  Return null if the facts
+    // cannot be derived.
+    public List<BindingList> answers(Literal goal) {
+	List<Literal> found = lookup(goal);
+	if (found == null)
+	    return (null);
+	List<BindingList> result = new ArrayList<BindingList>();
+	for (Literal fact : found) {
+	    BindingStore store = new BindingStore();
+	    matchTerms(goal.args, fact.args, store);
+	    result.add(store.toBindingList());
+	}
+	return (result);
+    }
+
+    // matches -- Return true if and only if the given ground fact is an
+    // instance of the given goal.
+    static boolean matches(Literal goal, Literal fact) {
+	return (matchTerms(goal.args, fact.args, new BindingStore()));
+    }
+
+    // matchTerms -- Match the given pattern terms against the given ground
+    // terms, binding the variables of the patterns in the given store.
+    // Return false if they do not match.
+    static boolean matchTerms(List<Term> patterns, List<Term> values,
+			      BindingStore store) {
+	if (patterns.size() != values.size())
+	    return (false);
+	for (int i = 0; i < patterns.size(); i++)
+	    if (!(matchTerm(patterns.get(i), values.get(i), store)))
+		return (false);
+	return (true);
+    }
+
+    // matchTerm -- Match the given pattern term against the given ground
+    // term, as above.
+    static boolean matchTerm(Term pattern, Term value, BindingStore store) {
+	pattern = store.deref(pattern);
+	if (pattern.v != null) {
+	    store.bind(pattern.v, value);
+	    return (true);
+	}
+	if (pattern.c != null)
+	    return ((value.c != null) && pattern.c.equals(value.c));
+	return ((pattern.f != null) && (value.f != null) &&
+		pattern.f.func.equals(value.f.func) &&
+		matchTerms(pattern.f.args, value.f.args, store));
+    }
+
+
+}
@@ -39,6 +39,20 @@ public class Function {
 	return (true);
     }
 
+    // equals -- Return true if and only if the given object is a function
+    // that is the same as this one.
+    public boolean equals(Object obj) {
+	return ((obj instanceof Function) && equals((Function) obj));
+    }
+
+    // hashCode -- Return a hash code consistent with "equals".
+    public int hashCode() {
+	int h = func.hashCode();
+	for (Term arg : args)
+	    h = (31 * h) + arg.hashCode();
+	return (h);
+    }
+
     // allVariables -- Return a set of all the variables in this function.
     public Set<Variable> allVariables() {
 	Set<Variable> allVs = new HashSet<Variable>();
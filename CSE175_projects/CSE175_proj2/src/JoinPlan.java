@@ -0,0 +1,55 @@
+//
+// JoinPlan
+//
+// This class implements the order in which to match the antecedents of a
+// compiled rule, when the facts for one of them are taken from the delta
+// of semi-naive evaluation.  That antecedent comes first, followed by the
+// others in order.  For each step, the plan records which argument
+// positions can be looked up in an index, because they hold constants or
+// variables bound at an earlier step, and which arguments bind variables.
+// Only the first 31 argument positions are indexed.
+//
+
+
+import java.util.*;
+
+
+class JoinPlan {
+    int[] order;             // antecedents, the delta antecedent first
+    int[] mask;              // bound argument positions at each step
+    boolean[][] binds;       // arguments that bind variables at each step
+
+    // Constructor with antecedents, delta antecedent, and number of
+    // variables specified ...
+    public JoinPlan(CompiledAtom[] body, int first, int variables) {
+	int n = body.length;
+	this.order = new int[n];
+	this.mask = new int[n];
+	this.binds = new boolean[n][];
+	order[0] = first;
+	for (int i = 0, k = 1; i < n; i++)
+	    if (i != first)
+		order[k++] = i;
+	// Only constants, and variables bound at an earlier step, can be
+	// looked up in an index.  A variable that appears more than once in
+	// the same antecedent is bound by its first appearance, and its later
+	// appearances are tested against that binding ...
+	int[] boundAt = new int[variables];
+	Arrays.fill(boundAt, -1);
+	for (int step = 0; step < n; step++) {
+	    CompiledAtom a = body[order[step]];
+	    binds[step] = new boolean[a.slot.length];
+	    for (int i = 0; i < a.slot.length; i++) {
+		int s = a.slot[i];
+		if ((s < 0) || ((boundAt[s] >= 0) && (boundAt[s] < step))) {
+		    if (i < 31)
+			mask[step] |= (1 << i);
+		} else if (boundAt[s] < 0) {
+		    binds[step][i] = true;
+		    boundAt[s] = step;
+		}
+	    }
+	}
+    }
+
+}
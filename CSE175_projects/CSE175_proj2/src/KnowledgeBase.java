@@ -9,13 +9,24 @@
 // class includes methods for prompting the user for these file names, storing
 // them in the object, and reading collections of facts and rules from
 // the corresponding files.  The top-level function for reading a knowledge
-// base from user-specified files is called "readKB".
+// base from user-specified files is called "readKB".  Facts are indexed
+// by predicate name and arity, and by the constant (or function name) in
+// their first argument, or optionally in every argument, so that the facts
+// which could unify with a goal can be found without examining every fact.
+// Similarly, rules are indexed by the predicate name and arity of their
+// consequents, so that the rules which could conclude a goal can be found
+// without examining every rule.  The lists of facts and rules may be read
+// directly, but they may only be changed through the "addFact",
+// "removeFact", "addRule", and "removeRule" methods, which keep the
+// indexes up to date and count the changes made, so that inference
+// engines which save results can tell when the knowledge base has changed.
 //
 // David Noelle -- Tue Apr 10 17:08:45 PDT 2007
 //
 
 
 import java.io.*;
+import java.lang.ref.*;
 import java.util.*;
 
 
@@ -23,13 +34,33 @@ public class KnowledgeBase {
 
     String factsFilename = "facts.dat";
     String rulesFilename = "rules.dat";
-    public List<Literal> facts;
-    public List<Rule> rules;
+    List<Literal> factList;
+    List<Rule> ruleList;
+    public List<Literal> facts;           // read-only view of "factList"
+    public List<Rule> rules;              // read-only view of "ruleList"
+    public boolean indexAllArguments = false;
+    int modificationCount = 0;
+    // Canonical copies of ground terms, shared by facts and answers.  The
+    // table only holds them weakly, so that terms which no fact or answer
+    // uses any longer are dropped from it ...
+    Map<Term, WeakReference<Term>> groundTerms;
+    // Fact indexes, keyed by predicate and arity, and by predicate, arity,
+    // argument position, and argument ...
+    Map<String, List<Literal>> factsByPredicate;
+    Map<String, List<Literal>> factsByArgument;
+    // Rule index, keyed by the predicate and arity of the consequent ...
+    Map<String, List<Rule>> rulesByConsequent;
 
     // Default constructor ...
     public KnowledgeBase() {
-	this.facts = new ArrayList<Literal>();
-	this.rules = new ArrayList<Rule>();
+	this.factList = new ArrayList<Literal>();
+	this.ruleList = new ArrayList<Rule>();
+	this.facts = Collections.unmodifiableList(factList);
+	this.rules = Collections.unmodifiableList(ruleList);
+	this.groundTerms = new WeakHashMap<Term, WeakReference<Term>>();
+	this.factsByPredicate = new HashMap<String, List<Literal>>();
+	this.factsByArgument = new HashMap<String, List<Literal>>();
+	this.rulesByConsequent = new HashMap<String, List<Rule>>();
     }
 
     // Constructor with filenames specified ...
@@ -94,7 +125,7 @@ public class KnowledgeBase {
 		Literal fact = new Literal();
 		while (fact.read(factScanner)) {
 		    // Record the fact in the knowledge base ...
-		    facts.add(fact);
+		    addFact(fact);
 		    // Allocate storage for the next fact ...
 		    fact = new Literal();
 		}
@@ -109,6 +140,208 @@ public class KnowledgeBase {
 	}
     }
 
+    // addFact -- Add the given ground literal to the list of facts, and
+    // to the fact indexes.  Its terms are replaced by canonical copies, so
+    // that identical terms are shared between facts.
+    public void addFact(Literal fact) {
+	fact.internTerms(groundTerms);
+	factList.add(fact);
+	indexFact(fact);
+	modificationCount++;
+    }
+
+    // removeFact -- Remove the first fact equal to the given literal from
+    // the list of facts, and from the fact indexes.  Return false if there
+    // is no such fact.
+    public boolean removeFact(Literal fact) {
+	int i = factList.indexOf(fact);
+	if (i < 0)
+	    return (false);
+	Literal removed = factList.remove(i);
+	String key = predicateKey(removed);
+	removeFromIndex(factsByPredicate, key, removed);
+	for (int j = 0; j < removed.args.size(); j++) {
+	    String argKey = argumentKey(removed.args.get(j));
+	    if (argKey != null)
+		removeFromIndex(factsByArgument, key + "#" + j + "=" + argKey,
+				removed);
+	}
+	modificationCount++;
+	return (true);
+    }
+
+    // getModificationCount -- Return the number of changes made to the facts
+    // and rules of this knowledge base so far.
+    public int getModificationCount() {
+	return (modificationCount);
+    }
+
+    // setIndexAllArguments -- Choose whether facts are indexed by every
+    // argument, or only by their first argument.
+    public void setIndexAllArguments(boolean all) {
+	if (all != indexAllArguments) {
+	    indexAllArguments = all;
+	    reindexFacts();
+	}
+    }
+
+    // reindexFacts -- Rebuild the fact indexes from the list of facts.
+    public void reindexFacts() {
+	factsByPredicate.clear();
+	factsByArgument.clear();
+	for (Literal fact : factList)
+	    indexFact(fact);
+    }
+
+    // indexFact -- Add the given fact to the fact indexes.
+    void indexFact(Literal fact) {
+	String key = predicateKey(fact);
+	addToIndex(factsByPredicate, key, fact);
+	int positions = indexAllArguments ? fact.args.size()
+	    : Math.min(1, fact.args.size());
+	for (int i = 0; i < positions; i++) {
+	    String argKey = argumentKey(fact.args.get(i));
+	    if (argKey != null)
+		addToIndex(factsByArgument, key + "#" + i + "=" + argKey, fact);
+	}
+    }
+
+    // addToIndex -- Add the given fact to the given index under the given
+    // key.
+    static void addToIndex(Map<String, List<Literal>> index, String key,
+			   Literal fact) {
+	List<Literal> entry = index.get(key);
+	if (entry == null) {
+	    entry = new ArrayList<Literal>();
+	    index.put(key, entry);
+	}
+	entry.add(fact);
+    }
+
+    // removeFromIndex -- Remove the given fact, and not merely an equal one,
+    // from the given index under the given key, if it is there.
+    static void removeFromIndex(Map<String, List<Literal>> index, String key,
+				Literal fact) {
+	List<Literal> entry = index.get(key);
+	if (entry == null)
+	    return;
+	for (int i = 0; i < entry.size(); i++) {
+	    if (entry.get(i) == fact) {
+		entry.remove(i);
+		break;
+	    }
+	}
+	if (entry.isEmpty())
+	    index.remove(key);
+    }
+
+    // predicateKey -- Return the index key for the predicate and arity of
+    // the given literal.
+    static String predicateKey(Literal lit) {
+	return (lit.pred.name + "/" + lit.args.size());
+    }
+
+    // argumentKey -- Return the index key for the given argument term, or
+    // null if it is a variable.  Function terms are keyed by function name
+    // and arity only.
+    static String argumentKey(Term arg) {
+	if (arg.c != null)
+	    return (arg.c.name);
+	if (arg.f != null)
+	    return ("(" + arg.f.func.name + "/" + arg.f.args.size());
+	return (null);
+    }
+
+    // candidateFacts -- Return the facts that might unify with the given
+    // goal under the given binding list:  those with the same predicate and
+    // arity, narrowed down using the bound arguments of the goal when they
+    // are indexed.  The returned list should not be modified.
+    public List<Literal> candidateFacts(Literal goal, BindingList bl) {
+	return (candidateFacts(goal,
+			       (bl == null) ? null : new BindingStore(bl)));
+    }
+
+    // candidateFacts -- Return the facts that might unify with the given
+    // goal under the bindings in the given store, as above.
+    public List<Literal> candidateFacts(Literal goal, BindingStore store) {
+	String key = predicateKey(goal);
+	List<Literal> best = factsByPredicate.get(key);
+	if (best == null)
+	    return (Collections.<Literal>emptyList());
+	int positions = indexAllArguments ? goal.args.size()
+	    : Math.min(1, goal.args.size());
+	for (int i = 0; i < positions; i++) {
+	    Term arg = goal.args.get(i);
+	    if (store != null)
+		arg = store.deref(arg);
+	    String argKey = argumentKey(arg);
+	    if (argKey == null)
+		continue;
+	    List<Literal> entry = factsByArgument.get(key + "#" + i + "="
+						      + argKey);
+	    if (entry == null)
+		return (Collections.<Literal>emptyList());
+	    if (entry.size() < best.size())
+		best = entry;
+	}
+	return (best);
+    }
+
+    // addRule -- Add the given rule to the end of the list of rules, and to
+    // the rule index.
+    public void addRule(Rule r) {
+	ruleList.add(r);
+	indexRule(r);
+	modificationCount++;
+    }
+
+    // removeRule -- Remove the given rule from the list of rules, and from
+    // the rule index.  Return false if it is not in the list.
+    public boolean removeRule(Rule r) {
+	for (int i = 0; i < ruleList.size(); i++) {
+	    if (ruleList.get(i) == r) {
+		ruleList.remove(i);
+		String key = predicateKey(r.consequent);
+		List<Rule> entry = rulesByConsequent.get(key);
+		entry.remove(r);
+		if (entry.isEmpty())
+		    rulesByConsequent.remove(key);
+		modificationCount++;
+		return (true);
+	    }
+	}
+	return (false);
+    }
+
+    // reindexRules -- Rebuild the rule index from the list of rules.
+    public void reindexRules() {
+	rulesByConsequent.clear();
+	for (Rule r : ruleList)
+	    indexRule(r);
+    }
+
+    // indexRule -- Add the given rule to the rule index.
+    void indexRule(Rule r) {
+	String key = predicateKey(r.consequent);
+	List<Rule> entry = rulesByConsequent.get(key);
+	if (entry == null) {
+	    entry = new ArrayList<Rule>();
+	    rulesByConsequent.put(key, entry);
+	}
+	entry.add(r);
+    }
+
+    // candidateRules -- Return the rules whose consequents have the same
+    // predicate and arity as the given goal, in the order in which they
+    // appear in the list of rules.  The returned list should not be
+    // modified.
+    public List<Rule> candidateRules(Literal goal) {
+	List<Rule> entry = rulesByConsequent.get(predicateKey(goal));
+	if (entry == null)
+	    return (Collections.<Rule>emptyList());
+	return (entry);
+    }
+
     // readRules -- Attempt to open the rules file specified by the
     // appropriate pathname stored in this KnowledgeBase object.  If this
     // file can be opened for reading, read a collection of rules from this
@@ -129,7 +362,7 @@ public class KnowledgeBase {
 		Rule r = new Rule();
 		while (r.read(ruleScanner)) {
 		    // Record the rule in the knowledge base ...
-		    rules.add(r);
+		    addRule(r);
 		    // Allocate storage for the next rule ...
 		    r = new Rule();
 		}
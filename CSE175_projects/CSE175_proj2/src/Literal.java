@@ -14,6 +14,7 @@
 
 
 import java.io.*;
+import java.lang.ref.*;
 import java.util.*;
 
 
@@ -41,6 +42,20 @@ public class Literal {
 	return (true);
     }
 
+    // equals -- Return true if and only if the given object is a literal
+    // that is the same as this one.
+    public boolean equals(Object obj) {
+	return ((obj instanceof Literal) && equals((Literal) obj));
+    }
+
+    // hashCode -- Return a hash code consistent with "equals".
+    public int hashCode() {
+	int h = pred.hashCode();
+	for (Term arg : args)
+	    h = (31 * h) + arg.hashCode();
+	return (h);
+    }
+
     // allVariables -- Return a set of all the variables in this function.
     public Set<Variable> allVariables() {
 	Set<Variable> allVs = new HashSet<Variable>();
@@ -50,6 +65,13 @@ public class Literal {
 	return (allVs);
     }
 
+    // internTerms -- Replace each ground argument of this literal with its
+    // canonical copy in the given table.
+    public void internTerms(Map<Term, WeakReference<Term>> groundTerms) {
+	for (int i = 0; i < args.size(); i++)
+	    args.set(i, args.get(i).intern(groundTerms));
+    }
+
     // subst -- Return a new Literal object that is the result of applying
     // the given binding list to this literal.  Return null on error.
     public Literal subst(BindingList bl) {
@@ -61,6 +83,15 @@ public class Literal {
 	return (result);
     }
 
+    // standardizeApart -- Return a new Literal object that is a copy of this
+    // literal with all of the variable names changed.
+    public Literal standardizeApart() {
+	BindingList bl = new BindingList();
+	for (Variable v : allVariables())
+	    bl.addBinding(v, new Term(new Variable("")));
+	return (subst(bl));
+    }
+
     // read -- Read a literal from the given scanner, filling in this object
     // with the results.  Return false on error.
     public boolean read(Scanner inScanner) {
@@ -0,0 +1,214 @@
+//
+// ProofIterator
+//
+// This class produces, one at a time and only on demand, every answer to a
+// query that a depth-first backward chaining proof procedure can find.  It
+// keeps a stack of "choice points", one for each goal that still has facts
+// or rules left to try, along with the list of goals that remain to be
+// proven.  Each choice point records the height of the binding store's
+// trail when it was made.  When a goal cannot be proven, or when another
+// answer is requested, the most recent choice point is resumed:  bindings
+// made since it was created are undone, and the next fact or rule is
+// tried.  This is chronological backtracking, so, unlike the "ask" method
+// of the original procedure, no proof is missed because an earlier match
+// was committed to.  The search is still depth-first, so it may run
+// forever when the rules are recursive, unless the recursive predicates
+// are tabled, in which case goals using them are matched against the
+// answers in their tables, as found by the inference engine, rather than
+// against facts and rules.  Choice points with no alternatives left are
+// discarded as soon as their last alternative is taken, except for those
+// matching goals against incomplete tables, which may yet gain answers.
+//
+
+
+import java.util.*;
+
+
+// GoalList -- An immutable list of goals still to be proven, sharing its
+// tail with the goal lists of earlier choice points.
+class GoalList {
+    Literal goal;
+    GoalList rest;
+
+    // Constructor with first goal and remaining goals specified ...
+    public GoalList(Literal goal, GoalList rest) {
+	this.goal = goal;
+	this.rest = rest;
+    }
+
+    // prepend -- Return the goal list made by adding the given goals, in
+    // order, to the front of the given goal list.
+    static GoalList prepend(List<Literal> goals, GoalList rest) {
+	for (int i = goals.size() - 1; i >= 0; i--)
+	    rest = new GoalList(goals.get(i), rest);
+	return (rest);
+    }
+
+}
+
+
+// ChoicePoint -- The alternatives left for proving one goal.
+class ChoicePoint {
+    GoalList goals;         // "goals.goal" is the goal being proven
+    int mark;               // trail height before the goal was tried
+    List<Literal> facts;
+    int nextFact = 0;
+    List<Rule> rules;
+    int nextRule = 0;
+    boolean open = false;   // more facts may be added to "facts"
+
+    // Constructor with goals, trail mark, and candidates specified ...
+    public ChoicePoint(GoalList goals, int mark, List<Literal> facts,
+		       List<Rule> rules) {
+	this.goals = goals;
+	this.mark = mark;
+	this.facts = facts;
+	this.rules = rules;
+    }
+
+    // isExhausted -- Return true if and only if every alternative has been
+    // tried.
+    public boolean isExhausted() {
+	return ((nextFact >= facts.size()) && (nextRule >= rules.size()));
+    }
+
+}
+
+
+public class ProofIterator implements Iterator<BindingList> {
+
+    BackwardChain engine;
+    BindingStore store;
+    List<ChoicePoint> choices;
+    GoalList goals;               // goals left after the last success
+    BindingList pending = null;   // an answer found but not yet returned
+    boolean started = false;
+    boolean exhausted = false;
+
+    // Constructor with inference engine, goals, and initial bindings
+    // specified ...
+    public ProofIterator(BackwardChain engine, List<Literal> goals,
+			 BindingList bl) {
+	this(engine, goals, new BindingStore(bl));
+    }
+
+    // Constructor with inference engine, goals, and a binding store holding
+    // the initial bindings specified.  Proofs are found by "advance",
+    // which leaves their bindings in the store ...
+    ProofIterator(BackwardChain engine, List<Literal> goals,
+		  BindingStore store) {
+	this.engine = engine;
+	this.store = store;
+	this.choices = new ArrayList<ChoicePoint>();
+	this.goals = GoalList.prepend(goals, null);
+    }
+
+    // hasNext -- Return true if and only if there is another answer,
+    // searching for it if necessary.
+    public boolean hasNext() {
+	if ((pending == null) && !exhausted)
+	    pending = search();
+	return (pending != null);
+    }
+
+    // next -- Return the next answer, as a binding list which includes
+    // bindings for intermediate variables.
+    public BindingList next() {
+	if (!(hasNext()))
+	    throw new NoSuchElementException();
+	BindingList answer = pending;
+	pending = null;
+	return (answer);
+    }
+
+    // search -- Continue the search from where it left off, returning the
+    // next answer, or null if there are no more.
+    BindingList search() {
+	return (advance() ? store.toBindingList() : null);
+    }
+
+    // advance -- Continue the search from where it left off, leaving the
+    // bindings of the next proof in the store.  Return false, leaving the
+    // store as it was initially, if there are no more proofs.
+    boolean advance() {
+	if (exhausted)
+	    return (false);
+	boolean proceed;
+	if (started) {
+	    // Look for an alternative to the last answer ...
+	    proceed = backtrack();
+	} else {
+	    started = true;
+	    proceed = true;
+	}
+	while (proceed) {
+	    if (goals == null)
+		// All goals have been satisfied ...
+		return (true);
+	    Literal goal = goals.goal;
+	    List<Literal> facts;
+	    List<Rule> rules;
+	    boolean open = false;
+	    if (engine.isTabled(goal)) {
+		// Tabled goals are matched against their answer tables ...
+		AnswerTable t = engine.answerTable(goal, store);
+		facts = t.currentAnswers();
+		rules = Collections.<Rule>emptyList();
+		open = !(t.complete);
+	    } else {
+		facts = engine.kb.candidateFacts(goal, store);
+		rules = engine.kb.candidateRules(goal);
+	    }
+	    ChoicePoint cp = new ChoicePoint(goals, store.mark(), facts, rules);
+	    cp.open = open;
+	    choices.add(cp);
+	    proceed = backtrack();
+	}
+	exhausted = true;
+	return (false);
+    }
+
+    // backtrack -- Take the next alternative from the most recent choice
+    // point that has one which works, setting the goals that then remain.
+    // Return false if there is no such alternative.
+    boolean backtrack() {
+	while (!(choices.isEmpty())) {
+	    ChoicePoint cp = choices.get(choices.size() - 1);
+	    store.undo(cp.mark);
+	    Literal goal = cp.goals.goal;
+	    GoalList next = null;
+	    boolean found = false;
+	    // Try the remaining facts ...
+	    while (!found && (cp.nextFact < cp.facts.size())) {
+		Literal fact = cp.facts.get(cp.nextFact++);
+		if (engine.unify(goal, fact, store)) {
+		    next = cp.goals.rest;
+		    found = true;
+		} else {
+		    store.undo(cp.mark);
+		}
+	    }
+	    // Then the remaining rules ...
+	    while (!found && (cp.nextRule < cp.rules.size())) {
+		Rule r = cp.rules.get(cp.nextRule++).standardizeApart();
+		if (engine.unify(goal, r.consequent, store)) {
+		    next = GoalList.prepend(r.antecedents, cp.goals.rest);
+		    found = true;
+		} else {
+		    store.undo(cp.mark);
+		}
+	    }
+	    if (found) {
+		if (cp.isExhausted() && !(cp.open))
+		    // No alternatives remain to come back to ...
+		    choices.remove(choices.size() - 1);
+		goals = next;
+		return (true);
+	    }
+	    choices.remove(choices.size() - 1);
+	}
+	return (false);
+    }
+
+
+}
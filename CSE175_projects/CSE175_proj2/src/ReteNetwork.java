@@ -0,0 +1,606 @@
+//
+// ReteNetwork
+//
+// This class implements incremental forward chaining with a Rete network
+// compiled from the rules of a knowledge base, so that the facts derived
+// from a changing set of facts ("working memory") can be kept current
+// without deriving them all again.  Each distinct antecedent pattern, up to
+// the names of its variables, has an "alpha memory" holding the facts that
+// match it.  Each rule has a chain of "join nodes", one for each of its
+// antecedents, in order.  A join node combines the partial matches
+// ("tokens") of the antecedents before it with the facts in the alpha
+// memory of its own antecedent, passing the extended tokens on to the next
+// node, or, at the end of the chain, supporting the rule's consequent.
+// Tokens and facts are hashed on the variables that a join shares with
+// earlier antecedents, so a new fact or token is only compared with those
+// that agree with it.  Asserting a fact propagates only the tokens that
+// include it.  Retracting a fact uses the "delete and rederive" method:
+// the tokens that include the fact are removed, along with every derived
+// fact that they supported, and then any removed fact that still has
+// another derivation is restored.  This is correct even when the rules
+// are recursive, where counting derivations alone is not.  Alpha memories
+// are shared among rules, but join nodes are not.  As with the Datalog
+// engine, rules must be function-free, and every variable in a rule's
+// consequent must appear among its antecedents; facts may contain any
+// ground terms.  The facts of the knowledge base form the initial working
+// memory, and later assertions and retractions do not change it.
+//
+
+
+import java.lang.ref.*;
+import java.util.*;
+
+
+// AlphaMemory -- The facts in working memory that match one antecedent
+// pattern, with hash indexes on subsets of their arguments.
+class AlphaMemory {
+    CompiledAtom pattern;
+    Set<Literal> facts;
+    List<JoinNode> successors;
+    // Indexes, by bit mask of the indexed argument positions ...
+    Map<Integer, Map<List<Term>, Set<Literal>>> indexes;
+
+    // Constructor with pattern and table of canonical ground terms
+    // specified ...
+    public AlphaMemory(Literal pattern,
+		       Map<Term, WeakReference<Term>> groundTerms) {
+	this.pattern = new CompiledAtom(pattern,
+					new HashMap<Variable, Integer>(),
+					groundTerms);
+	this.facts = new LinkedHashSet<Literal>();
+	this.successors = new ArrayList<JoinNode>();
+	this.indexes = new HashMap<Integer, Map<List<Term>, Set<Literal>>>();
+    }
+
+    // accepts -- Return true if and only if the given ground fact, with
+    // canonical arguments, matches the pattern of this memory.
+    public boolean accepts(Literal fact) {
+	int n = pattern.slot.length;
+	if (fact.args.size() != n)
+	    return (false);
+	Term[] values = new Term[n];
+	for (int i = 0; i < n; i++) {
+	    Term arg = fact.args.get(i);
+	    int s = pattern.slot[i];
+	    if (s < 0) {
+		if (!(arg.equals(pattern.constant[i])))
+		    return (false);
+	    } else if (values[s] == null) {
+		values[s] = arg;
+	    } else if (!(arg.equals(values[s]))) {
+		return (false);
+	    }
+	}
+	return (true);
+    }
+
+    // add -- Add the given fact to this memory and its indexes.
+    public void add(Literal fact) {
+	facts.add(fact);
+	for (Map.Entry<Integer, Map<List<Term>, Set<Literal>>> e
+		 : indexes.entrySet()) {
+	    List<Term> key = JoinNode.keyOf(fact, e.getKey());
+	    Set<Literal> entry = e.getValue().get(key);
+	    if (entry == null) {
+		entry = new LinkedHashSet<Literal>();
+		e.getValue().put(key, entry);
+	    }
+	    entry.add(fact);
+	}
+    }
+
+    // remove -- Remove the given fact from this memory and its indexes.
+    public void remove(Literal fact) {
+	facts.remove(fact);
+	for (Map.Entry<Integer, Map<List<Term>, Set<Literal>>> e
+		 : indexes.entrySet()) {
+	    List<Term> key = JoinNode.keyOf(fact, e.getKey());
+	    Set<Literal> entry = e.getValue().get(key);
+	    if (entry != null) {
+		entry.remove(fact);
+		if (entry.isEmpty())
+		    e.getValue().remove(key);
+	    }
+	}
+    }
+
+    // lookup -- Return the facts whose arguments, at the positions in the
+    // given mask, are those in the given key.  The index for the mask is
+    // built when it is first needed.
+    public Set<Literal> lookup(int mask, List<Term> key) {
+	if (mask == 0)
+	    return (facts);
+	Map<List<Term>, Set<Literal>> index = indexes.get(mask);
+	if (index == null) {
+	    index = new HashMap<List<Term>, Set<Literal>>();
+	    for (Literal fact : facts) {
+		List<Term> k = JoinNode.keyOf(fact, mask);
+		Set<Literal> entry = index.get(k);
+		if (entry == null) {
+		    entry = new LinkedHashSet<Literal>();
+		    index.put(k, entry);
+		}
+		entry.add(fact);
+	    }
+	    indexes.put(mask, index);
+	}
+	Set<Literal> entry = index.get(key);
+	if (entry == null)
+	    return (Collections.<Literal>emptySet());
+	return (entry);
+    }
+
+}
+
+
+// Token -- A match of the first few antecedents of a rule, giving values
+// to the variables that they contain.
+class Token {
+    Token parent;
+    Literal fact;            // matching the last of the antecedents
+    Term[] values;           // by variable number, or null if unbound
+    JoinNode node;           // node that made this token, or null
+    List<Token> children;
+    boolean live = true;
+
+    // Constructor with parent token, fact, values, and node specified ...
+    public Token(Token parent, Literal fact, Term[] values, JoinNode node) {
+	this.parent = parent;
+	this.fact = fact;
+	this.values = values;
+	this.node = node;
+	this.children = new ArrayList<Token>();
+    }
+
+}
+
+
+// JoinNode -- The test for one antecedent of a rule, joining the tokens
+// for the antecedents before it with the facts in its alpha memory.
+class JoinNode {
+    CompiledRule rule;
+    int depth;               // position of the antecedent in the rule
+    CompiledAtom atom;
+    AlphaMemory alpha;
+    int mask;                // argument positions bound by earlier tokens
+    boolean[] binds;         // arguments that bind variables
+    JoinNode child;          // next node, or null for the last antecedent
+    // Tokens from the previous node, by the values of the shared
+    // variables, and tokens made here, by the fact they add ...
+    Map<List<Term>, Set<Token>> left;
+    Map<Literal, Set<Token>> made;
+
+    // Constructor with rule, antecedent position, and alpha memory
+    // specified ...
+    public JoinNode(CompiledRule rule, int depth, AlphaMemory alpha) {
+	this.rule = rule;
+	this.depth = depth;
+	this.atom = rule.body[depth];
+	this.alpha = alpha;
+	this.left = new HashMap<List<Term>, Set<Token>>();
+	this.made = new HashMap<Literal, Set<Token>>();
+	// The plan that starts with the first antecedent keeps them in
+	// order, so it says which arguments bind variables here.  The others
+	// are constants, which the alpha memory tests, variables that appear
+	// earlier in this antecedent, which it also tests, and variables
+	// bound by the earlier antecedents, which are shared ...
+	this.binds = rule.plans[0].binds[depth];
+	this.mask = 0;
+	Set<Integer> local = new HashSet<Integer>();
+	for (int i = 0; i < atom.slot.length; i++) {
+	    if (binds[i])
+		local.add(atom.slot[i]);
+	    else if ((atom.slot[i] >= 0) && !(local.contains(atom.slot[i])) &&
+		     (i < 31))
+		mask |= (1 << i);
+	}
+    }
+
+    // keyOf -- Return the arguments of the given fact at the positions in
+    // the given mask.
+    static List<Term> keyOf(Literal fact, int mask) {
+	List<Term> key = new ArrayList<Term>();
+	for (int i = 0; (i < fact.args.size()) && (i < 31); i++)
+	    if ((mask & (1 << i)) != 0)
+		key.add(fact.args.get(i));
+	return (key);
+    }
+
+    // keyOf -- Return the values of the variables of the given token that
+    // are shared with the antecedent of this node, in argument order.
+    List<Term> keyOf(Token t) {
+	List<Term> key = new ArrayList<Term>();
+	for (int i = 0; (i < atom.slot.length) && (i < 31); i++)
+	    if ((mask & (1 << i)) != 0)
+		key.add(t.values[atom.slot[i]]);
+	return (key);
+    }
+
+    // extend -- Return the token made by adding the given fact to the
+    // given token, or null if the fact does not agree with the token.
+    Token extend(Token t, Literal fact) {
+	Term[] values = t.values.clone();
+	for (int i = 0; i < atom.slot.length; i++) {
+	    int s = atom.slot[i];
+	    if (binds[i])
+		values[s] = fact.args.get(i);
+	    else if ((s >= 0) && !(fact.args.get(i).equals(values[s])))
+		return (null);
+	}
+	Token result = new Token(t, fact, values, this);
+	t.children.add(result);
+	Set<Token> tokens = made.get(fact);
+	if (tokens == null) {
+	    tokens = new LinkedHashSet<Token>();
+	    made.put(fact, tokens);
+	}
+	tokens.add(result);
+	return (result);
+    }
+
+}
+
+
+public class ReteNetwork {
+
+    public KnowledgeBase kb;
+    Map<Literal, AlphaMemory> alphas;        // by variant of pattern
+    Map<String, List<AlphaMemory>> alphasByPredicate;
+    List<CompiledRule> compiled;
+    Set<Literal> asserted;                   // facts given directly
+    Set<Literal> present;                    // every fact in memory
+    Map<String, Set<Literal>> presentByPredicate;
+    Map<Literal, Integer> support;           // derivations of each fact
+    LinkedList<Literal> additions;
+    LinkedList<Literal> deletions;
+    List<Literal> deleted;                   // during a retraction
+
+    // Constructor with knowledge base specified ...
+    public ReteNetwork(KnowledgeBase kb) {
+	this.kb = kb;
+	this.alphas = new HashMap<Literal, AlphaMemory>();
+	this.alphasByPredicate = new HashMap<String, List<AlphaMemory>>();
+	this.compiled = new ArrayList<CompiledRule>();
+	this.asserted = new HashSet<Literal>();
+	this.present = new HashSet<Literal>();
+	this.presentByPredicate = new HashMap<String, Set<Literal>>();
+	this.support = new HashMap<Literal, Integer>();
+	this.additions = new LinkedList<Literal>();
+	this.deletions = new LinkedList<Literal>();
+	this.deleted = new ArrayList<Literal>();
+    }
+
+    // build -- Compile the rules of the knowledge base into a network,
+    // with the facts of the knowledge base, and whatever follows from them,
+    // in working memory.  Return false, leaving the network empty, if some
+    // rule is not function-free.
+    public boolean build() {
+	alphas.clear();
+	alphasByPredicate.clear();
+	compiled.clear();
+	asserted.clear();
+	present.clear();
+	presentByPredicate.clear();
+	support.clear();
+	for (Rule r : kb.rules) {
+	    if (!(DatalogEngine.isFunctionFree(r))) {
+		alphas.clear();
+		alphasByPredicate.clear();
+		compiled.clear();
+		return (false);
+	    }
+	    compiled.add(new CompiledRule(r, kb.groundTerms));
+	}
+	for (int k = 0; k < compiled.size(); k++) {
+	    CompiledRule r = compiled.get(k);
+	    List<Literal> antecedents = kb.rules.get(k).antecedents;
+	    Token root = new Token(null, null, new Term[r.variables], null);
+	    if (r.body.length == 0) {
+		// Rules without antecedents support their consequents
+		// forever ...
+		supportConsequent(r, root);
+		continue;
+	    }
+	    JoinNode previous = null;
+	    for (int i = 0; i < r.body.length; i++) {
+		JoinNode node = new JoinNode(r, i, alpha(antecedents.get(i)));
+		node.alpha.successors.add(node);
+		if (previous == null) {
+		    Set<Token> roots = new LinkedHashSet<Token>();
+		    roots.add(root);
+		    node.left.put(node.keyOf(root), roots);
+		} else {
+		    previous.child = node;
+		}
+		previous = node;
+	    }
+	}
+	for (Literal fact : kb.facts)
+	    assertFact(fact);
+	propagate();
+	return (true);
+    }
+
+    // alpha -- Return the alpha memory for the given antecedent pattern,
+    // creating it if necessary.
+    AlphaMemory alpha(Literal pattern) {
+	Literal key = AnswerTable.variant(pattern);
+	AlphaMemory a = alphas.get(key);
+	if (a == null) {
+	    a = new AlphaMemory(key, kb.groundTerms);
+	    alphas.put(key, a);
+	    String pred = KnowledgeBase.predicateKey(key);
+	    List<AlphaMemory> list = alphasByPredicate.get(pred);
+	    if (list == null) {
+		list = new ArrayList<AlphaMemory>();
+		alphasByPredicate.put(pred, list);
+	    }
+	    list.add(a);
+	}
+	return (a);
+    }
+
+    // assertFact -- Add the given ground fact to working memory, along
+    // with everything that then follows from it.  Return false if it was
+    // already asserted or is not ground.
+    public boolean assertFact(Literal fact) {
+	Literal copy = canonicalCopy(fact);
+	if ((copy == null) || !(asserted.add(copy)))
+	    return (false);
+	if (!(present.contains(copy))) {
+	    addPresent(copy);
+	    propagate();
+	}
+	return (true);
+    }
+
+    // retractFact -- Remove the given ground fact from the asserted facts,
+    // withdrawing whatever no longer follows.  Return false if it was not
+    // asserted.  The fact remains in working memory if it is derived.
+    public boolean retractFact(Literal fact) {
+	Literal copy = canonicalCopy(fact);
+	if ((copy == null) || !(asserted.remove(copy)))
+	    return (false);
+	// Delete everything that the fact supports ...
+	deleted.clear();
+	removePresent(copy);
+	while (!(deletions.isEmpty()))
+	    deleteFact(deletions.removeFirst());
+	// Then restore whatever has another derivation ...
+	for (Literal d : deleted)
+	    if (!(present.contains(d)) &&
+		(asserted.contains(d) || support.containsKey(d))) {
+		addPresent(d);
+	    }
+	deleted.clear();
+	propagate();
+	return (true);
+    }
+
+    // holds -- Return true if and only if the given ground fact is in
+    // working memory.
+    public boolean holds(Literal fact) {
+	Literal copy = canonicalCopy(fact);
+	return ((copy != null) && present.contains(copy));
+    }
+
+    // lookup -- Return the facts in working memory that match the given
+    // goal.
+    public List<Literal> lookup(Literal goal) {
+	List<Literal> found = new ArrayList<Literal>();
+	Set<Literal> facts
+	    = presentByPredicate.get(KnowledgeBase.predicateKey(goal));
+	if (facts != null)
+	    for (Literal fact : facts)
+		if (DatalogEngine.matches(goal, fact))
+		    found.add(fact);
+	return (found);
+    }
+
+    // answers -- Return a binding list for the variables of the given goal
+    // for each fact in working memory that matches it.
+    public List<BindingList> answers(Literal goal) {
+	List<BindingList> result = new ArrayList<BindingList>();
+	for (Literal fact : lookup(goal)) {
+	    BindingStore store = new BindingStore();
+	    DatalogEngine.matchTerms(goal.args, fact.args, store);
+	    result.add(store.toBindingList());
+	}
+	return (result);
+    }
+
+    // canonicalCopy -- Return a copy of the given fact with canonical
+    // arguments, or null if it is not ground.
+    Literal canonicalCopy(Literal fact) {
+	Literal copy = new Literal();
+	copy.pred = fact.pred;
+	copy.args.addAll(fact.args);
+	copy.internTerms(kb.groundTerms);
+	for (Term arg : copy.args)
+	    if (!(arg.isGround()))
+		return (null);
+	return (copy);
+    }
+
+    // propagate -- Add the facts waiting to be added to the alpha memories
+    // that they match, until no more facts are derived.
+    void propagate() {
+	while (!(additions.isEmpty()))
+	    addFact(additions.removeFirst());
+    }
+
+    // addFact -- Add the given fact to the alpha memories that it matches,
+    // and make every token that includes it.  The fact is placed in all of
+    // its memories first, and then the join nodes are activated from the
+    // last antecedents to the first, so that a match using the fact for
+    // several antecedents of a rule is made exactly once, by the node for
+    // the first of them.
+    void addFact(Literal fact) {
+	List<JoinNode> nodes = new ArrayList<JoinNode>();
+	List<AlphaMemory> list
+	    = alphasByPredicate.get(KnowledgeBase.predicateKey(fact));
+	if (list == null)
+	    return;
+	for (AlphaMemory a : list) {
+	    if (a.accepts(fact)) {
+		a.add(fact);
+		nodes.addAll(a.successors);
+	    }
+	}
+	Collections.sort(nodes, new Comparator<JoinNode>() {
+		public int compare(JoinNode x, JoinNode y) {
+		    return (y.depth - x.depth);
+		}
+	    });
+	for (JoinNode node : nodes) {
+	    Set<Token> tokens = node.left.get(JoinNode.keyOf(fact, node.mask));
+	    if (tokens == null)
+		continue;
+	    for (Token t : new ArrayList<Token>(tokens)) {
+		Token extended = node.extend(t, fact);
+		if (extended != null)
+		    activate(node, extended);
+	    }
+	}
+    }
+
+    // activate -- Pass the given token, made by the given node, on to the
+    // next node, joining it with the facts there, or use it to support the
+    // consequent of the rule, if the node is the last.
+    void activate(JoinNode node, Token t) {
+	JoinNode next = node.child;
+	if (next == null) {
+	    supportConsequent(node.rule, t);
+	    return;
+	}
+	List<Term> key = next.keyOf(t);
+	Set<Token> tokens = next.left.get(key);
+	if (tokens == null) {
+	    tokens = new LinkedHashSet<Token>();
+	    next.left.put(key, tokens);
+	}
+	tokens.add(t);
+	for (Literal fact
+		 : new ArrayList<Literal>(next.alpha.lookup(next.mask, key))) {
+	    Token extended = next.extend(t, fact);
+	    if (extended != null)
+		activate(next, extended);
+	}
+    }
+
+    // consequent -- Return the consequent of the given rule, under the
+    // variable values of the given complete token.
+    static Literal consequent(CompiledRule r, Token t) {
+	Literal fact = new Literal();
+	fact.pred = r.head.pred;
+	for (int i = 0; i < r.head.slot.length; i++)
+	    fact.args.add((r.head.slot[i] < 0) ? r.head.constant[i]
+			  : t.values[r.head.slot[i]]);
+	return (fact);
+    }
+
+    // supportConsequent -- Record a derivation of the consequent of the
+    // given rule, by the given complete token, adding the consequent to
+    // working memory if it is new.
+    void supportConsequent(CompiledRule r, Token t) {
+	Literal fact = consequent(r, t);
+	Integer count = support.get(fact);
+	support.put(fact, (count == null) ? 1 : (count + 1));
+	if (!(present.contains(fact)))
+	    addPresent(fact);
+    }
+
+    // withdrawConsequent -- Remove a derivation of the consequent of the
+    // given rule, by the given complete token, deleting the consequent from
+    // working memory, for now, unless it is asserted.
+    void withdrawConsequent(CompiledRule r, Token t) {
+	Literal fact = consequent(r, t);
+	Integer count = support.get(fact);
+	if (count == null)
+	    return;
+	if (count > 1)
+	    support.put(fact, count - 1);
+	else
+	    support.remove(fact);
+	if (present.contains(fact) && !(asserted.contains(fact)))
+	    removePresent(fact);
+    }
+
+    // addPresent -- Place the given fact in working memory, to be added to
+    // the alpha memories.
+    void addPresent(Literal fact) {
+	present.add(fact);
+	String key = KnowledgeBase.predicateKey(fact);
+	Set<Literal> facts = presentByPredicate.get(key);
+	if (facts == null) {
+	    facts = new LinkedHashSet<Literal>();
+	    presentByPredicate.put(key, facts);
+	}
+	facts.add(fact);
+	additions.add(fact);
+    }
+
+    // removePresent -- Take the given fact out of working memory, to be
+    // removed from the alpha memories.
+    void removePresent(Literal fact) {
+	present.remove(fact);
+	Set<Literal> facts
+	    = presentByPredicate.get(KnowledgeBase.predicateKey(fact));
+	if (facts != null)
+	    facts.remove(fact);
+	deleted.add(fact);
+	deletions.add(fact);
+    }
+
+    // deleteFact -- Remove the given fact from the alpha memories that
+    // hold it, along with every token that includes it.
+    void deleteFact(Literal fact) {
+	List<AlphaMemory> list
+	    = alphasByPredicate.get(KnowledgeBase.predicateKey(fact));
+	if (list == null)
+	    return;
+	for (AlphaMemory a : list) {
+	    if (!(a.facts.contains(fact)))
+		continue;
+	    a.remove(fact);
+	    for (JoinNode node : a.successors) {
+		Set<Token> tokens = node.made.remove(fact);
+		if (tokens != null)
+		    for (Token t : new ArrayList<Token>(tokens))
+			deleteToken(t);
+	    }
+	}
+    }
+
+    // deleteToken -- Remove the given token, and every token made from it,
+    // from the network, withdrawing the derivations that they complete.
+    void deleteToken(Token t) {
+	if (!(t.live))
+	    return;
+	t.live = false;
+	for (Token child : new ArrayList<Token>(t.children))
+	    deleteToken(child);
+	JoinNode node = t.node;
+	Set<Token> tokens = node.made.get(t.fact);
+	if (tokens != null) {
+	    tokens.remove(t);
+	    if (tokens.isEmpty())
+		node.made.remove(t.fact);
+	}
+	if (t.parent.live)
+	    t.parent.children.remove(t);
+	if (node.child == null) {
+	    withdrawConsequent(node.rule, t);
+	} else {
+	    List<Term> key = node.child.keyOf(t);
+	    tokens = node.child.left.get(key);
+	    if (tokens != null) {
+		tokens.remove(t);
+		if (tokens.isEmpty())
+		    node.child.left.remove(key);
+	    }
+	}
+    }
+
+
+}
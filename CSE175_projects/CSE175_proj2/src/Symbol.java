@@ -3,13 +3,21 @@
 //
 // This class implements an atomic symbol.  Symbol names can be provided
 // at creation time.  If the empty string is provided as a symbol name,
-// a novel name is provided for the symbol, instead.
+// a novel name is provided for the symbol, instead.  Symbol names are
+// interned in a table shared by all symbols, which gives each distinct name
+// a single shared entry, holding an integer identifier, so that symbols may
+// be compared by entry, and hashed by identifier, rather than by comparing
+// strings.  The table only holds its entries weakly, so the name of a
+// symbol that is no longer in use (such as a variable made for one use of
+// a rule) is dropped from the table.  The entry is looked up again whenever
+// the name of the symbol has been changed.
 //
 // David Noelle -- Tue Apr 10 17:08:45 PDT 2007
 //
 
 
 import java.io.*;
+import java.lang.ref.*;
 import java.util.*;
 
 
@@ -19,7 +27,27 @@ public class Symbol {
     static String gensymPrefix = "SYM-";
     static int gensymCounter = 1;
 
+    // The symbol table, mapping names to entries ...
+    static Map<String, WeakReference<Entry>> symbolTable
+	= new WeakHashMap<String, WeakReference<Entry>>();
+    static int nextId = 0;
+
     public String name = "";
+    Entry entry = null;     // the table entry for "idName"
+    String idName = null;   // the name for which "entry" was looked up
+
+    // Entry -- The shared symbol table entry for a name.  The table is keyed
+    // by the entry's own copy of the name, so that the table keeps the
+    // entry for as long as some symbol holds the entry.
+    static class Entry {
+	String name;
+	int id;
+
+	Entry(String name, int id) {
+	    this.name = name;
+	    this.id = id;
+	}
+    }
 
     // Default constructor ...
     public Symbol() {
@@ -38,10 +66,49 @@ public class Symbol {
 	}
     }
 
+    // intern -- Return the entry for the given name, adding the name to the
+    // symbol table if it is not already there.
+    static synchronized Entry intern(String name) {
+	WeakReference<Entry> ref = symbolTable.get(name);
+	Entry known = (ref == null) ? null : ref.get();
+	if (known != null)
+	    return (known);
+	// Drop any stale mapping, so that the new entry's name is the key ...
+	symbolTable.remove(name);
+	Entry e = new Entry(name, nextId++);
+	symbolTable.put(e.name, new WeakReference<Entry>(e));
+	return (e);
+    }
+
+    // entry -- Return the symbol table entry for the name of this symbol.
+    Entry entry() {
+	if (name != idName) {
+	    entry = intern(name);
+	    idName = name;
+	}
+	return (entry);
+    }
+
+    // id -- Return the identifier of the name of this symbol.
+    public int id() {
+	return (entry().id);
+    }
+
     // equals -- Return true if and only if this symbol has the same name
     // as the argument symbol.
     public boolean equals(Symbol s) {
-	return (s.name.equals(this.name));
+	return (s.entry() == entry());
+    }
+
+    // equals -- Return true if and only if the given object is a symbol
+    // with the same name as this symbol.
+    public boolean equals(Object obj) {
+	return ((obj instanceof Symbol) && equals((Symbol) obj));
+    }
+
+    // hashCode -- Return a hash code consistent with "equals".
+    public int hashCode() {
+	return (id());
     }
 
     // read -- Read a symbol from the given scanner, changing the name of
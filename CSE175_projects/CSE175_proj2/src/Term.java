@@ -7,13 +7,25 @@
 // for each of the three types of terms.  Methods are provided for identifying
 // all of the variables in a given term (including those appearing deep 
 // within function arguments) and for substituting variables in a term  with
-// their corresponding values, according to a given binding list.
+// their corresponding values, according to a given binding list.  Ground
+// terms (terms without variables) may be "hash-consed" by the "intern"
+// method, which returns a shared, canonical copy of the term, with shared
+// canonical arguments, from a given table of canonical terms, and the
+// "find" method looks a canonical copy up without adding one.  Each
+// knowledge base has its own table, so the table is discarded along with
+// the knowledge base, and the table only holds its terms weakly, so that a
+// term is dropped from it once no fact or answer uses the term.  Canonical
+// terms are never modified, so terms from the same table are equal to one
+// another only if they are the same object, and they do not need to be
+// copied when a binding list is applied to them.  Whether or not a term is
+// ground is remembered once it has been determined.
 //
 // David Noelle -- Tue Apr 10 17:08:45 PDT 2007
 //
 
 
 import java.io.*;
+import java.lang.ref.*;
 import java.util.*;
 
 
@@ -22,6 +34,10 @@ public class Term {
     public Constant c;
     public Variable v;
     public Function f;
+    boolean canonical = false;
+    Map<Term, WeakReference<Term>> table = null;   // if canonical
+    int hash = 0;              // valid for canonical terms
+    byte groundness = 0;       // 0 if not yet known, 1 if ground, 2 if not
 
     // Default constructor ...
     public Term() {
@@ -35,6 +51,7 @@ public class Term {
 	this.c = trm.c;
 	this.v = trm.v;
 	this.f = trm.f;
+	this.groundness = trm.groundness;
     }
 
     // Constructor for constants ...
@@ -61,6 +78,9 @@ public class Term {
     // equals -- Return true if and only if this term is the same as the
     // given term.
     public boolean equals(Term trm) {
+	if (canonical && trm.canonical && (table == trm.table))
+	    // Canonical terms are shared ...
+	    return (this == trm);
 	if (((c == null) && (trm.c != null)) ||
 	    ((c != null) && (trm.c == null)) ||
 	    ((v == null) && (trm.v != null)) ||
@@ -77,6 +97,110 @@ public class Term {
 	}
     }
 
+    // equals -- Return true if and only if the given object is a term that
+    // is the same as this term.
+    public boolean equals(Object obj) {
+	return ((obj instanceof Term) && equals((Term) obj));
+    }
+
+    // hashCode -- Return a hash code consistent with "equals".
+    public int hashCode() {
+	if (canonical)
+	    return (hash);
+	if (c != null)
+	    return (c.hashCode());
+	if (v != null)
+	    return (v.hashCode());
+	if (f != null)
+	    return (f.hashCode());
+	return (0);
+    }
+
+    // isGround -- Return true if and only if this term contains no
+    // variables.  The answer is remembered, so terms should not be
+    // modified once this has been called.
+    public boolean isGround() {
+	if (groundness == 0) {
+	    boolean ground = canonical || (c != null);
+	    if (f != null) {
+		ground = true;
+		for (int i = 0; ground && (i < f.args.size()); i++)
+		    ground = f.args.get(i).isGround();
+	    }
+	    groundness = (byte) (ground ? 1 : 2);
+	}
+	return (groundness == 1);
+    }
+
+    // intern -- Return the canonical copy of this term in the given table
+    // of canonical ground terms, if it is ground, or this term itself,
+    // otherwise.
+    public Term intern(Map<Term, WeakReference<Term>> groundTerms) {
+	if ((canonical && (table == groundTerms)) || (v != null))
+	    return (this);
+	Term key;
+	if (f != null) {
+	    // Make a function term with canonical arguments ...
+	    Function g = new Function();
+	    g.func = f.func;
+	    for (Term arg : f.args) {
+		Term sharedArg = arg.intern(groundTerms);
+		if (!(sharedArg.canonical))
+		    // The term is not ground ...
+		    return (this);
+		g.args.add(sharedArg);
+	    }
+	    key = new Term(g);
+	} else if (c != null) {
+	    key = new Term(c);
+	} else {
+	    return (this);
+	}
+	synchronized (groundTerms) {
+	    WeakReference<Term> ref = groundTerms.get(key);
+	    Term shared = (ref == null) ? null : ref.get();
+	    if (shared == null) {
+		// Drop any stale mapping, so that the new copy is the key ...
+		groundTerms.remove(key);
+		key.hash = key.hashCode();
+		key.canonical = true;
+		key.table = groundTerms;
+		groundTerms.put(key, new WeakReference<Term>(key));
+		shared = key;
+	    }
+	    return (shared);
+	}
+    }
+
+    // find -- Return the canonical copy of this ground term in the given
+    // table of canonical ground terms, or null if the table holds no copy
+    // of it, or if it is not ground.  Nothing is added to the table.
+    public Term find(Map<Term, WeakReference<Term>> groundTerms) {
+	if (canonical && (table == groundTerms))
+	    return (this);
+	Term key;
+	if (f != null) {
+	    // Make a function term with canonical arguments ...
+	    Function g = new Function();
+	    g.func = f.func;
+	    for (Term arg : f.args) {
+		Term sharedArg = arg.find(groundTerms);
+		if (sharedArg == null)
+		    return (null);
+		g.args.add(sharedArg);
+	    }
+	    key = new Term(g);
+	} else if (c != null) {
+	    key = new Term(c);
+	} else {
+	    return (null);
+	}
+	synchronized (groundTerms) {
+	    WeakReference<Term> ref = groundTerms.get(key);
+	    return ((ref == null) ? null : ref.get());
+	}
+    }
+
     // allVariables -- Return a set of all the variables in this term.
     public Set<Variable> allVariables() {
 	Set<Variable> allVs = new HashSet<Variable>();
@@ -94,7 +218,10 @@ public class Term {
     // given binding list to this term.  Return null on error.
     public Term subst(BindingList bl) {
 	Term result;
-	if (c != null) {
+	if (canonical) {
+	    // Canonical terms are ground and are never modified ...
+	    result = this;
+	} else if (c != null) {
 	    result = new Term(c);
 	} else {
 	    if (v != null) {
@@ -119,6 +246,7 @@ public class Term {
     // read -- Read a logical term from the given scanner, filling
     // in this object with the results.  Return false on error.
     public boolean read(Scanner inScanner) {
+	groundness = 0;
 	inScanner.useDelimiter("[\\s]+");
 	if (inScanner.hasNext("\\(.*")) {
 	    // The next item is a function invocation ...